@@ -0,0 +1,25 @@
+package benchmark;
+
+import model.TransactionBatch;
+
+/**
+ * The rows every benchmark starts from, the same on every run.
+ */
+final class BenchmarkData {
+
+  private static final String[] CATEGORIES = {"food", "travel", "bills", "entertainment", "other"};
+  // 01-01-2024 00:00 UTC, one transaction per minute from there on
+  private static final long START = 1704067200000L;
+
+  private BenchmarkData() {
+  }
+
+  static TransactionBatch rows(int count) {
+    TransactionBatch batch = new TransactionBatch(count);
+    for (int i = 0; i < count; i++) {
+      batch.add(1 + (i * 37L) % 1000, CATEGORIES[i % CATEGORIES.length], START + i * 60000L);
+    }
+    return batch;
+  }
+
+}
@@ -0,0 +1,83 @@
+package benchmark;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import model.ExpenseTrackerModel;
+import model.Transaction;
+import model.Filter.AmountFilter;
+import model.Filter.CategoryFilter;
+import model.Filter.ParallelFilter;
+
+/**
+ * The filters over a list of transactions, and over the model where they
+ * are answered from its indexes or scanned in parallel.
+ *
+ * The amount range matches about a tenth of the rows, the category a fifth.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class FilterBenchmark {
+
+  @Param({"1000", "100000", "1000000", "10000000"})
+  public int rows;
+
+  private ExpenseTrackerModel model;
+  private List<Transaction> transactions;
+  private AmountFilter amountFilter;
+  private CategoryFilter categoryFilter;
+  private ParallelFilter parallelCategoryFilter;
+
+  @Setup
+  public void fillModel() {
+    model = new ExpenseTrackerModel();
+    model.addTransactions(BenchmarkData.rows(rows));
+    transactions = model.getTransactions();
+    amountFilter = new AmountFilter(100, 200);
+    categoryFilter = new CategoryFilter("food");
+    parallelCategoryFilter = new ParallelFilter(categoryFilter);
+  }
+
+  @Benchmark
+  public List<Transaction> amountFilter() {
+    return amountFilter.filter(transactions);
+  }
+
+  @Benchmark
+  public List<Transaction> categoryFilter() {
+    return categoryFilter.filter(transactions);
+  }
+
+  @Benchmark
+  public BitSet amountFilterRows() {
+    return amountFilter.filterRows(model);
+  }
+
+  @Benchmark
+  public BitSet categoryFilterRows() {
+    return categoryFilter.filterRows(model);
+  }
+
+  @Benchmark
+  public BitSet parallelCategoryFilterRows() {
+    return parallelCategoryFilter.filterRows(model);
+  }
+
+}
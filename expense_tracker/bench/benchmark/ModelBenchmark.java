@@ -0,0 +1,64 @@
+package benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import model.ExpenseTrackerModel;
+import model.Transaction;
+import model.TransactionBatch;
+
+/**
+ * Adding to and copying out of an ExpenseTrackerModel of the given size.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class ModelBenchmark {
+
+  @Param({"1000", "100000", "1000000", "10000000"})
+  public int rows;
+
+  private TransactionBatch batch;
+  private Transaction transaction;
+  private ExpenseTrackerModel model;
+
+  @Setup(Level.Trial)
+  public void createRows() {
+    batch = BenchmarkData.rows(rows);
+    transaction = new Transaction(42, "food");
+  }
+
+  // Adds grow the model, so every iteration starts again from the same rows
+  @Setup(Level.Iteration)
+  public void fillModel() {
+    model = new ExpenseTrackerModel();
+    model.addTransactions(batch);
+  }
+
+  @Benchmark
+  public long addTransaction() {
+    return model.addTransaction(transaction);
+  }
+
+  @Benchmark
+  public List<Transaction> getTransactions() {
+    return model.getTransactions();
+  }
+
+}
@@ -0,0 +1,81 @@
+package benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import controller.ExpenseTrackerController;
+import model.ExpenseTrackerModel;
+import model.Filter.CategoryFilter;
+import view.ExpenseTrackerView;
+import view.TransactionTableModel;
+
+/**
+ * Applying a filter through the controller and refreshing the table of the
+ * view. The frame is created but never shown, so this needs a display but
+ * no one watching it.
+ *
+ * The benchmark thread is not the event dispatch thread, so applyFilter runs
+ * the filter right away instead of handing it to the query thread.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class ViewBenchmark {
+
+  // About the rows the table shows at once
+  private static final int VISIBLE_ROWS = 40;
+
+  @Param({"1000", "100000", "1000000", "10000000"})
+  public int rows;
+
+  private ExpenseTrackerView view;
+  private ExpenseTrackerController controller;
+
+  @Setup
+  public void createView() {
+    ExpenseTrackerModel model = new ExpenseTrackerModel();
+    model.addTransactions(BenchmarkData.rows(rows));
+    view = new ExpenseTrackerView();
+    controller = new ExpenseTrackerController(model, view);
+    controller.setFilter(new CategoryFilter("food"));
+  }
+
+  @TearDown
+  public void disposeView() {
+    view.dispose();
+  }
+
+  @Benchmark
+  public void applyFilter() {
+    controller.applyFilter();
+  }
+
+  // A refresh followed by reading the cells of the first screen, like a repaint does
+  @Benchmark
+  public void refreshTable(Blackhole blackhole) {
+    view.refreshTable();
+    TransactionTableModel table = view.getTableModel();
+    for (int row = 0; row < VISIBLE_ROWS; row++) {
+      for (int column = 0; column < table.getColumnCount(); column++) {
+        blackhole.consume(table.getValueAt(row, column));
+      }
+    }
+  }
+
+}
@@ -1,9 +1,18 @@
 import javax.swing.JOptionPane;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import controller.CsvImporter;
 import controller.ExpenseTrackerController;
 import model.ExpenseTrackerModel;
+import model.Persistence.TransactionDatabase;
+import model.Persistence.TransactionLog;
 import view.ExpenseTrackerView;
 import model.Filter.AmountFilter;
 import model.Filter.CategoryFilter;
+import model.Filter.DateRangeFilter;
+import model.Metrics.MetricsRegistry;
+import javax.management.JMException;
 
 public class ExpenseTrackerApp {
 
@@ -12,8 +21,11 @@ public class ExpenseTrackerApp {
    */
   public static void main(String[] args) {
     
+    startMetrics();
+
     // Create MVC components
     ExpenseTrackerModel model = new ExpenseTrackerModel();
+    openTransactionDatabase(model);
     ExpenseTrackerView view = new ExpenseTrackerView();
     ExpenseTrackerController controller = new ExpenseTrackerController(model, view);
     
@@ -68,6 +80,28 @@ public class ExpenseTrackerApp {
     view.toFront();
    }});
 
+    // Add action listener to the "Filter by Date" button
+    view.addApplyDateFilterListener(e -> {
+      try {
+        String[] range = view.getDateFilterInput();
+        if (range != null) {
+          controller.setFilter(DateRangeFilter.between(range[0], range[1]));
+          controller.applyFilter();
+        }
+      } catch (IllegalArgumentException exception) {
+        JOptionPane.showMessageDialog(view, exception.getMessage());
+        view.toFront();
+      }
+    });
+
+    view.newCategoryListener(e -> {
+      String category = view.getNewCategoryInput();
+      if (category != null && !controller.addCategory(category.trim())) {
+        JOptionPane.showMessageDialog(view, "Invalid category entered");
+        view.toFront();
+      }
+    });
+
    view.undoListener(e -> {
       try {
         int undoRowIndex = view.undoRow();
@@ -78,5 +112,106 @@ public class ExpenseTrackerApp {
       }
   });
 
+    view.undoLastListener(e -> {
+      if (!controller.undo()) {
+        JOptionPane.showMessageDialog(view, "Nothing to undo");
+        view.toFront();
+      }
+    });
+
+    view.redoListener(e -> {
+      if (!controller.redo()) {
+        JOptionPane.showMessageDialog(view, "Nothing to redo");
+        view.toFront();
+      }
+    });
+
+    view.importListener(e -> {
+      Path file = view.getImportFile();
+      if (file == null) {
+        return;
+      }
+      // Read in the background, the table shows the chunks as they are added
+      controller.importTransactionsInBackground(file, result -> {
+        String message = "Imported " + result.getImportedCount() + " transactions.";
+        if (result.getRejectedCount() > 0) {
+          message += "\nSkipped " + result.getRejectedCount() + " invalid lines, the first one is line "
+              + result.getFirstRejectedLine() + ".";
+        }
+        JOptionPane.showMessageDialog(view, message);
+        view.toFront();
+      }, exception -> {
+        JOptionPane.showMessageDialog(view, "Could not import the file: " + exception.getMessage());
+        view.toFront();
+      });
+    });
+
+    view.exportListener(e -> {
+      Path file = view.getExportFile();
+      if (file == null) {
+        return;
+      }
+      controller.exportTransactionsInBackground(file, written -> {
+        JOptionPane.showMessageDialog(view, "Exported " + written + " transactions.");
+        view.toFront();
+      }, exception -> {
+        JOptionPane.showMessageDialog(view, "Could not export the file: " + exception.getMessage());
+        view.toFront();
+      });
+    });
+
+  }
+
+  /**
+   * The metrics of adds, filters, undos and table refreshes are collected
+   * unless -Dexpensetracker.metrics=false, and can be read and switched on or
+   * off through JMX. With -Dexpensetracker.metrics.dumpSeconds they are also
+   * written to the standard output periodically.
+   */
+  private static void startMetrics() {
+    MetricsRegistry metrics = MetricsRegistry.getDefault();
+    try {
+      metrics.registerMBean(MetricsRegistry.OBJECT_NAME);
+    } catch (JMException e) {
+      System.err.println("Could not register the metrics: " + e.getMessage());
+    }
+    long dumpSeconds = Long.getLong("expensetracker.metrics.dumpSeconds", 0);
+    if (dumpSeconds > 0) {
+      metrics.startDump(dumpSeconds * 1000, System.out);
+    }
+  }
+
+  /**
+   * Durable mode, enabled with -Dexpensetracker.data=<directory>. The stored
+   * transactions are loaded into the model and every change is logged until
+   * the application exits. -Dexpensetracker.log.flushMillis and
+   * -Dexpensetracker.log.batchSize tune how often the records are forced to
+   * disk, -Dexpensetracker.compactAfter how many records are logged before
+   * they are folded into a new snapshot.
+   */
+  private static void openTransactionDatabase(ExpenseTrackerModel model) {
+    String dataDirectory = System.getProperty("expensetracker.data");
+    if (dataDirectory == null) {
+      return;
+    }
+    long flushIntervalMillis = Long.getLong("expensetracker.log.flushMillis",
+        TransactionLog.DEFAULT_FLUSH_INTERVAL_MILLIS);
+    int batchSize = Integer.getInteger("expensetracker.log.batchSize", TransactionLog.DEFAULT_BATCH_SIZE);
+    long compactionThreshold = Long.getLong("expensetracker.compactAfter",
+        TransactionDatabase.DEFAULT_COMPACTION_THRESHOLD);
+    try {
+      TransactionDatabase database = TransactionDatabase.open(Paths.get(dataDirectory), model,
+          flushIntervalMillis, batchSize, compactionThreshold);
+      // Write the records still in memory when the window is closed
+      Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+        try {
+          database.close();
+        } catch (IOException e) {
+          System.err.println("Could not write the transaction log: " + e.getMessage());
+        }
+      }));
+    } catch (IOException e) {
+      JOptionPane.showMessageDialog(null, "Could not open the transactions: " + e.getMessage());
+    }
   }
 }
@@ -0,0 +1,306 @@
+package controller;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+import model.ExpenseTrackerModel;
+import model.Transaction;
+import model.TransactionBatch;
+
+/**
+ * Imports transactions from a CSV file into the model.
+ *
+ * Every line holds amount,category and optionally the date in the format of
+ * the table (dd-MM-yyyy HH:mm); transactions without a date get the time of
+ * the import. A first line that does not start with an amount is taken as a
+ * header. Lines that cannot be parsed or fail the InputValidation rules are
+ * counted and skipped.
+ *
+ * The file is read in chunks that end on a line break. Worker threads parse
+ * the chunks, validate all lines of a chunk at once with
+ * InputValidation.findInvalid and put the valid ones into TransactionBatches,
+ * while the calling thread hands the finished ones to the model, or to the
+ * thread that changes it, in file order, one batch at a time.
+ * At most twice as many chunks as workers are in flight, so the memory used
+ * does not depend on the size of the file.
+ */
+public class CsvImporter {
+
+  public static final int DEFAULT_CHUNK_SIZE = 4 << 20;
+
+  private final ExpenseTrackerModel model;
+  private final int parallelism;
+  private final int chunkSize;
+
+  public CsvImporter(ExpenseTrackerModel model) {
+    this(model, Runtime.getRuntime().availableProcessors(), DEFAULT_CHUNK_SIZE);
+  }
+
+  public CsvImporter(ExpenseTrackerModel model, int parallelism, int chunkSize) {
+    if (model == null) {
+      throw new IllegalArgumentException("The model must be non-null.");
+    }
+    if (parallelism <= 0 || chunkSize <= 0) {
+      throw new IllegalArgumentException("The parallelism and chunk size must be positive.");
+    }
+    this.model = model;
+    this.parallelism = parallelism;
+    this.chunkSize = chunkSize;
+  }
+
+  /**
+   * Imports the file into the model. Must be called from the thread that changes the model.
+   */
+  public Result importFile(Path file) throws IOException {
+    return importFile(file, model::addTransactions);
+  }
+
+  /**
+   * Imports the file, passing every batch of valid transactions to addBatch
+   * instead of adding it to the model. addBatch is called on the calling
+   * thread, in file order, and may hand the batch to the thread that changes
+   * the model.
+   */
+  public Result importFile(Path file, Consumer<TransactionBatch> addBatch) throws IOException {
+    long importTime = System.currentTimeMillis();
+    ExecutorService workers = Executors.newFixedThreadPool(parallelism, task -> {
+      Thread thread = new Thread(task, "CsvImporter worker");
+      thread.setDaemon(true);
+      return thread;
+    });
+    ArrayDeque<Future<Chunk>> pending = new ArrayDeque<>();
+    Result result = new Result();
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      ByteBuffer buffer = ByteBuffer.allocate(chunkSize);
+      boolean first = true;
+      boolean end = false;
+      while (!end) {
+        end = fill(channel, buffer);
+        byte[] bytes = buffer.array();
+        int length = end ? buffer.position() : lastLineBreak(bytes, buffer.position()) + 1;
+        if (length == 0) {
+          // A single line longer than the buffer
+          buffer = ByteBuffer.allocate(buffer.capacity() * 2).put(buffer.flip());
+          continue;
+        }
+        byte[] chunk = Arrays.copyOf(bytes, length);
+        boolean header = first;
+        pending.add(workers.submit(() -> parse(chunk, header, importTime)));
+        first = false;
+        // Keep the remainder of the last line for the next chunk
+        buffer.flip().position(length);
+        buffer.compact();
+
+        if (pending.size() >= 2 * parallelism) {
+          append(pending.poll(), addBatch, result);
+        }
+      }
+      while (!pending.isEmpty()) {
+        append(pending.poll(), addBatch, result);
+      }
+    } finally {
+      workers.shutdownNow();
+    }
+    return result;
+  }
+
+  // Reads until the buffer is full, returns true at the end of the file
+  private static boolean fill(FileChannel channel, ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer) < 0) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static int lastLineBreak(byte[] bytes, int length) {
+    for (int i = length - 1; i >= 0; i--) {
+      if (bytes[i] == '\n') {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private static void append(Future<Chunk> future, Consumer<TransactionBatch> addBatch, Result result)
+      throws IOException {
+    Chunk chunk;
+    try {
+      chunk = future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while importing", e);
+    } catch (ExecutionException e) {
+      throw new IOException("The import failed", e.getCause());
+    }
+    addBatch.accept(chunk.batch);
+    result.imported += chunk.batch.size();
+    result.rejected += chunk.rejected;
+    if (result.firstRejectedLine == -1 && chunk.firstRejectedLine != -1) {
+      result.firstRejectedLine = result.lines + chunk.firstRejectedLine;
+    }
+    result.lines += chunk.lines;
+  }
+
+  private static Chunk parse(byte[] bytes, boolean mayHaveHeader, long importTime) {
+    String text = new String(bytes, StandardCharsets.UTF_8);
+    Chunk chunk = new Chunk(new TransactionBatch(bytes.length / 16), bytes.length / 16);
+    int start = 0;
+    while (start < text.length()) {
+      int end = text.indexOf('\n', start);
+      if (end == -1) {
+        end = text.length();
+      }
+      chunk.lines++;
+      String line = text.substring(start, end).trim();
+      start = end + 1;
+      if (line.isEmpty()) {
+        continue;
+      }
+      if (mayHaveHeader && chunk.lines == 1 && isHeader(line)) {
+        continue;
+      }
+      if (!parseLine(line, chunk, importTime)) {
+        chunk.reject(chunk.lines);
+      }
+    }
+    BitSet invalid = InputValidation.findInvalid(chunk.amounts, chunk.categories, chunk.parsed);
+    for (int i = 0; i < chunk.parsed; i++) {
+      if (invalid.get(i)) {
+        chunk.reject(chunk.lineNumbers[i]);
+      } else {
+        chunk.batch.add(chunk.amounts[i], chunk.categories[i], chunk.times[i]);
+      }
+    }
+    return chunk;
+  }
+
+  // Adds the fields of the line to the chunk, they are validated with the other lines later
+  private static boolean parseLine(String line, Chunk chunk, long importTime) {
+    String[] fields = line.split(",", -1);
+    if (fields.length < 2 || fields.length > 3) {
+      return false;
+    }
+    try {
+      double amount = Double.parseDouble(unquote(fields[0]));
+      String category = unquote(fields[1]);
+      long time = importTime;
+      String date = fields.length == 3 ? unquote(fields[2]) : "";
+      if (!date.isEmpty()) {
+        // Exports list many transactions per day, so the same date often repeats
+        if (!date.equals(chunk.lastDate)) {
+          chunk.lastTime = Transaction.parseTimestamp(date);
+          chunk.lastDate = date;
+        }
+        time = chunk.lastTime;
+      }
+      chunk.addParsed(amount, category, time);
+      return true;
+    } catch (DateTimeParseException | NumberFormatException e) {
+      return false;
+    }
+  }
+
+  private static boolean isHeader(String line) {
+    int comma = line.indexOf(',');
+    try {
+      Double.parseDouble(unquote(comma == -1 ? line : line.substring(0, comma)));
+      return false;
+    } catch (NumberFormatException e) {
+      return true;
+    }
+  }
+
+  private static String unquote(String field) {
+    field = field.trim();
+    if (field.length() >= 2 && field.charAt(0) == '"' && field.charAt(field.length() - 1) == '"') {
+      field = field.substring(1, field.length() - 1).trim();
+    }
+    return field;
+  }
+
+  private static class Chunk {
+    final TransactionBatch batch;
+    int lines;
+    int rejected;
+    int firstRejectedLine = -1;
+    String lastDate;
+    long lastTime;
+
+    // The parsed lines waiting for validation
+    double[] amounts;
+    String[] categories;
+    long[] times;
+    int[] lineNumbers;
+    int parsed;
+
+    Chunk(TransactionBatch batch, int capacity) {
+      this.batch = batch;
+      amounts = new double[capacity];
+      categories = new String[capacity];
+      times = new long[capacity];
+      lineNumbers = new int[capacity];
+    }
+
+    void addParsed(double amount, String category, long time) {
+      if (parsed == amounts.length) {
+        int capacity = parsed + (parsed >> 1) + 1;
+        amounts = Arrays.copyOf(amounts, capacity);
+        categories = Arrays.copyOf(categories, capacity);
+        times = Arrays.copyOf(times, capacity);
+        lineNumbers = Arrays.copyOf(lineNumbers, capacity);
+      }
+      amounts[parsed] = amount;
+      categories[parsed] = category;
+      times[parsed] = time;
+      lineNumbers[parsed++] = lines;
+    }
+
+    void reject(int line) {
+      rejected++;
+      if (firstRejectedLine == -1 || line < firstRejectedLine) {
+        firstRejectedLine = line;
+      }
+    }
+  }
+
+  /**
+   * Counts of an import.
+   */
+  public static class Result {
+    private int imported;
+    private int rejected;
+    private long lines;
+    private long firstRejectedLine = -1;
+
+    public int getImportedCount() {
+      return imported;
+    }
+
+    public int getRejectedCount() {
+      return rejected;
+    }
+
+    /**
+     * @return the line number of the first skipped line, counting from 1, or -1 if no line was skipped
+     */
+    public long getFirstRejectedLine() {
+      return firstRejectedLine;
+    }
+  }
+
+}
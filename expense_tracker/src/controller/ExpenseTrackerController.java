@@ -1,30 +1,63 @@
 package controller;
 
-import view.ExpenseTrackerView;
+import view.TransactionView;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.file.Path;
+import java.util.BitSet;
+import java.util.function.Consumer;
 
-import javax.swing.JOptionPane;
+import javax.swing.SwingUtilities;
 
+import model.CategoryRegistry;
 import model.ExpenseTrackerModel;
 import model.Transaction;
+import model.TransactionBatch;
+import model.TransactionHistory;
+import model.Filter.ParallelFilter;
 import model.Filter.TransactionFilter;
+import model.Filter.TransactionRowFilter;
+import model.Metrics.LatencyHistogram;
+import model.Metrics.MetricsRegistry;
+import model.Persistence.TransactionExporter;
 
+/**
+ * The changes of the model are made one at a time: the Swing view calls the
+ * controller on the event dispatch thread, and other threads, like the
+ * LoadGenerator, wait for each other here. Filters run without waiting for
+ * changes, see applyFilter().
+ */
 public class ExpenseTrackerController {
+
+  private static final LatencyHistogram ADD_TIME = MetricsRegistry.getDefault().histogram("controller.add");
+  // From applying a filter until its rows are highlighted
+  private static final LatencyHistogram FILTER_TIME = MetricsRegistry.getDefault().histogram("controller.filter");
+  private static final LatencyHistogram UNDO_TIME = MetricsRegistry.getDefault().histogram("controller.undo");
+  private static final LatencyHistogram REDO_TIME = MetricsRegistry.getDefault().histogram("controller.redo");
   
   private ExpenseTrackerModel model;
-  private ExpenseTrackerView view;
+  private TransactionView view;
   /** 
    * The Controller is applying the Strategy design pattern.
    * This is the has-a relationship with the Strategy class 
    * being used in the applyFilter method.
    */
-  private TransactionFilter filter;
+  private volatile TransactionFilter filter;
+  // Every change of the model from now on can be undone and redone
+  private TransactionHistory history;
+  // Filters run here instead of on the event dispatch thread
+  private QueryExecutor queries;
 
-  public ExpenseTrackerController(ExpenseTrackerModel model, ExpenseTrackerView view) {
+  public ExpenseTrackerController(ExpenseTrackerModel model, TransactionView view) {
     this.model = model;
     this.view = view;
+    this.history = new TransactionHistory(model);
+    this.queries = new QueryExecutor(model);
+    // The table follows the changes of the model from now on
+    view.bindModel(model);
   }
 
   public void setFilter(TransactionFilter filter) {
@@ -33,57 +66,205 @@ public class ExpenseTrackerController {
   }
 
   public void refresh() {
-    List<Transaction> transactions = model.getTransactions();
-    view.refreshTable(transactions);
+    view.refreshTable();
   }
 
-  public boolean addTransaction(double amount, String category) {
-    if (!InputValidation.isValidAmount(amount)) {
-      return false;
-    }
-    if (!InputValidation.isValidCategory(category)) {
+  public synchronized boolean addTransaction(double amount, String category) {
+    // The Transaction constructor runs the InputValidation checks, so they only run once
+    Transaction t;
+    try {
+      t = new Transaction(amount, category);
+    } catch (IllegalArgumentException e) {
       return false;
     }
     
-    Transaction t = new Transaction(amount, category);
+    // The table model receives the new row from the model
+    long started = ADD_TIME.start();
     model.addTransaction(t);
-    view.getTableModel().addRow(new Object[]{t.getAmount(), t.getCategory(), t.getTimestamp()});
-    refresh();
+    ADD_TIME.stop(started);
     return true;
   }
 
+  /**
+   * Changes the amount and category of the transaction with the ID.
+   *
+   * @return false if the values are not valid or there is no such transaction
+   */
+  public synchronized boolean updateTransaction(long id, double amount, String category) {
+    try {
+      return model.updateTransaction(id, amount, category);
+    } catch (IllegalArgumentException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Registers a new category so transactions and filters can use it. Categories
+   * are only stored with the transactions that use them.
+   */
+  public boolean addCategory(String category) {
+    try {
+      CategoryRegistry.getDefault().register(category);
+    } catch (IllegalArgumentException | IllegalStateException e) {
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Imports the transactions of a CSV file, see CsvImporter for the format.
+   * The table receives one update per imported chunk instead of one per line.
+   *
+   * The file is read on the calling thread, but every chunk is added on the
+   * event dispatch thread, so the table never paints a model that changes
+   * underneath it. Only adding a chunk waits for the other changes, which can
+   * be made between the chunks of a long import.
+   */
+  public CsvImporter.Result importTransactions(Path file) throws IOException {
+    // The chunks of the file are added one by one, but undone as one import
+    long group;
+    synchronized (this) {
+      group = history.newGroup();
+    }
+    try {
+      return new CsvImporter(model).importFile(file, batch -> addImported(batch, group));
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
+  private void addImported(TransactionBatch batch, long group) {
+    Runnable add = () -> {
+      synchronized (this) {
+        history.beginGroup(group);
+        try {
+          model.addTransactions(batch);
+        } finally {
+          history.endGroup();
+        }
+      }
+    };
+    if (SwingUtilities.isEventDispatchThread()) {
+      add.run();
+      return;
+    }
+    try {
+      SwingUtilities.invokeAndWait(add);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new UncheckedIOException(new InterruptedIOException("Interrupted while importing"));
+    } catch (InvocationTargetException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw (Error) e.getCause();
+    }
+  }
+
+  /**
+   * Imports the file in the background, so the window keeps painting while a
+   * large file is read. The result, or the error, is passed to the event
+   * dispatch thread.
+   */
+  public void importTransactionsInBackground(Path file, Consumer<CsvImporter.Result> onResult,
+      Consumer<IOException> onError) {
+    queries.execute(() -> importTransactions(file), onResult, ioErrors(onError));
+  }
+
+  /**
+   * Writes the transactions matching the current filter, or all of them when
+   * no filter is set, to a CSV file.
+   *
+   * @return the number of transactions written
+   */
+  public long exportTransactions(Path file) throws IOException {
+    return TransactionExporter.writeCsv(model, filter, file);
+  }
+
+  /**
+   * Exports in the background, like importTransactionsInBackground(). The
+   * number of transactions written, or the error, is passed to the event
+   * dispatch thread.
+   */
+  public void exportTransactionsInBackground(Path file, Consumer<Long> onResult, Consumer<IOException> onError) {
+    // The filter of the time of the click
+    TransactionFilter filter = this.filter;
+    queries.execute(() -> TransactionExporter.writeCsv(model, filter, file), onResult, ioErrors(onError));
+  }
+
+  private static Consumer<Exception> ioErrors(Consumer<IOException> onError) {
+    return e -> onError.accept(e instanceof IOException ? (IOException) e : new IOException(e));
+  }
+
   public void applyFilter() {
+    // Read once, another thread may set a new filter meanwhile
+    TransactionFilter filter = this.filter;
     //null check for filter
     if(filter!=null){
       // Use the Strategy class to perform the desired filtering
-      List<Transaction> transactions = model.getTransactions();
-      List<Transaction> filteredTransactions = filter.filter(transactions);
-      List<Integer> rowIndexes = new ArrayList<>();
-      for (Transaction t : filteredTransactions) {
-        int rowIndex = transactions.indexOf(t);
-        if (rowIndex != -1) {
-          rowIndexes.add(rowIndex);
-        }
+      // Row filters report the matching rows directly, others are adapted.
+      // Large ledgers are scanned in parallel.
+      TransactionRowFilter rowFilter = new ParallelFilter(filter);
+      long started = FILTER_TIME.start();
+      if (SwingUtilities.isEventDispatchThread()) {
+        // Scanned in the background, a newer filter cancels this one
+        queries.submit(() -> rowFilter.filterRows(model), rowIndexes -> {
+          view.highlightRows(rowIndexes);
+          FILTER_TIME.stop(started);
+        });
+      } else {
+        // Called from outside the UI, e.g. by the LoadGenerator, the filter runs on
+        // this thread and the view is still only updated on the event dispatch thread
+        BitSet rowIndexes = model.read(() -> rowFilter.filterRows(model));
+        SwingUtilities.invokeLater(() -> {
+          view.highlightRows(rowIndexes);
+          FILTER_TIME.stop(started);
+        });
       }
-      view.highlightRows(rowIndexes);
     }
     else{
-      JOptionPane.showMessageDialog(view, "No filter applied");
-      view.toFront();}
+      view.showMessage("No filter applied");}
 
   }
 
-  public void undoTransaction(int index) {
-    List<Transaction> transactions = model.getTransactions();
-    Transaction transaction = transactions.get(index);
-    if (!transactions.isEmpty()) {
-    model.removeTransaction(transaction);
-    view.getTableModel().removeRow(index);
-    refresh();
+  public synchronized void undoTransaction(int index) {
+    // The table may show a filtered list, so the row is mapped to the transaction by its ID
+    long id = view.getTableModel().getTransactionId(index);
+    if (id != 0) {
+    // The table model removes the row when the model reports it
+    long started = UNDO_TIME.start();
+    model.removeTransactionById(id);
+    UNDO_TIME.stop(started);
     }
     else{
       // Handle the case when there are no transactions (perhaps display a message)
         System.out.println("Cannot undo. No transactions available.");
     }
 }
+
+  /**
+   * Undoes the last change: an add, a removal, a whole import or a clear.
+   *
+   * @return false if there was nothing to undo
+   */
+  public synchronized boolean undo() {
+    long started = UNDO_TIME.start();
+    boolean undone = history.undo();
+    UNDO_TIME.stop(started);
+    return undone;
+  }
+
+  /**
+   * @return false if there was nothing to redo
+   */
+  public synchronized boolean redo() {
+    long started = REDO_TIME.start();
+    boolean redone = history.redo();
+    REDO_TIME.stop(started);
+    return redone;
+  }
+
+  public TransactionHistory getHistory() {
+    return history;
+  }
 }
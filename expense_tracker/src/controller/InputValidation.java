@@ -1,11 +1,17 @@
 package controller;
 
-import java.util.Arrays;
+import java.util.BitSet;
+
+import model.CategoryRegistry;
 
 public class InputValidation {
 
   public static boolean isValidAmount(double amount) {
     
+    // NaN passes every comparison below, and would break the totals and the amount index
+    if (!Double.isFinite(amount)) {
+      return false;
+    }
     // Check range
     if(amount >1000) {
       return false;
@@ -19,29 +25,32 @@ public class InputValidation {
     return true;
   }
 
+  /**
+   * A category is valid when it is registered in the default CategoryRegistry,
+   * ignoring case. The built-in categories are food, travel, bills,
+   * entertainment and other.
+   */
   public static boolean isValidCategory(String category) {
+    return CategoryRegistry.getDefault().contains(category);
+  }
 
-    if(category == null) {
-      return false; 
-    }
-  
-    if(category.trim().isEmpty()) {
-      return false;
-    }
-
-    if(!category.matches("[a-zA-Z]+")) {
-      return false;
+  /**
+   * Validates the first count amounts and categories in one pass, as the
+   * CsvImporter does for every chunk.
+   *
+   * @return a set bit for every position whose amount or category is not valid
+   */
+  public static BitSet findInvalid(double[] amounts, String[] categories, int count) {
+    if (amounts.length < count || categories.length < count) {
+      throw new IllegalArgumentException("The arrays must hold " + count + " values.");
     }
-
-    String[] validWords = {"food", "travel", "bills", "entertainment", "other"};
-
-    if(!Arrays.asList(validWords).contains(category.toLowerCase())) {
-      // invalid word  
-      return false;
+    BitSet invalid = new BitSet();
+    for (int i = 0; i < count; i++) {
+      if (!isValidAmount(amounts[i]) || !isValidCategory(categories[i])) {
+        invalid.set(i);
+      }
     }
-  
-    return true;
-  
+    return invalid;
   }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,182 @@
+package controller;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+import model.ExpenseTrackerModel;
+import model.Filter.AmountFilter;
+import model.Filter.CategoryFilter;
+import model.Filter.TransactionFilter;
+import model.Metrics.MetricsRegistry;
+import view.HeadlessView;
+
+/**
+ * Drives an ExpenseTrackerController from several threads with a mix of
+ * adds, filters and undos, and reports the sustained operations per second.
+ * Every operation picks its kind at random, weighted by the mix:
+ *   add      adds a transaction with a random amount and category
+ *   filter   sets a random category or amount filter and applies it
+ *   undo     undoes the last change, as the Undo Last button does
+ *
+ * From the command line it runs against a HeadlessView, so no display is needed:
+ *   java -cp bin controller.LoadGenerator [threads] [seconds] [add,filter,undo]
+ */
+public class LoadGenerator {
+
+  public static final int DEFAULT_THREADS = 4;
+  public static final int DEFAULT_SECONDS = 10;
+  public static final int[] DEFAULT_MIX = {70, 20, 10};
+
+  private static final String[] CATEGORIES = {"food", "travel", "bills", "entertainment", "other"};
+
+  private final ExpenseTrackerController controller;
+  private final int threads;
+  private final int addWeight;
+  private final int filterWeight;
+  private final int undoWeight;
+
+  /**
+   * @param addWeight the share of adds, relative to the other weights
+   */
+  public LoadGenerator(ExpenseTrackerController controller, int threads, int addWeight, int filterWeight,
+      int undoWeight) {
+    if (controller == null) {
+      throw new IllegalArgumentException("The controller must be non-null.");
+    }
+    if (threads <= 0) {
+      throw new IllegalArgumentException("At least one thread is required.");
+    }
+    if (addWeight < 0 || filterWeight < 0 || undoWeight < 0 || addWeight + filterWeight + undoWeight == 0) {
+      throw new IllegalArgumentException("The weights must not be negative and at least one must be positive.");
+    }
+    this.controller = controller;
+    this.threads = threads;
+    this.addWeight = addWeight;
+    this.filterWeight = filterWeight;
+    this.undoWeight = undoWeight;
+  }
+
+  /**
+   * Runs the operations on every thread until the duration is over.
+   *
+   * @throws IllegalStateException if an operation failed, the load is stopped then
+   */
+  public Result run(long durationMillis) throws InterruptedException {
+    Result result = new Result();
+    AtomicReference<Throwable> failure = new AtomicReference<>();
+    CountDownLatch start = new CountDownLatch(1);
+    List<Thread> workers = new ArrayList<>(threads);
+    for (int i = 0; i < threads; i++) {
+      Thread worker = new Thread(() -> {
+        try {
+          start.await();
+          long deadline = System.nanoTime() + durationMillis * 1_000_000L;
+          while (System.nanoTime() < deadline && failure.get() == null) {
+            runOperation(result);
+          }
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        } catch (RuntimeException | Error e) {
+          failure.compareAndSet(null, e);
+        }
+      }, "load-generator-" + i);
+      workers.add(worker);
+      worker.start();
+    }
+    long started = System.nanoTime();
+    start.countDown();
+    for (Thread worker : workers) {
+      worker.join();
+    }
+    result.elapsedNanos = System.nanoTime() - started;
+    if (failure.get() != null) {
+      throw new IllegalStateException("An operation failed under load.", failure.get());
+    }
+    return result;
+  }
+
+  private void runOperation(Result result) {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    int pick = random.nextInt(addWeight + filterWeight + undoWeight);
+    if (pick < addWeight) {
+      controller.addTransaction(1 + random.nextInt(1000), CATEGORIES[random.nextInt(CATEGORIES.length)]);
+      result.adds.increment();
+    } else if (pick < addWeight + filterWeight) {
+      TransactionFilter filter;
+      if (random.nextBoolean()) {
+        filter = new CategoryFilter(CATEGORIES[random.nextInt(CATEGORIES.length)]);
+      } else {
+        int from = 1 + random.nextInt(900);
+        filter = new AmountFilter(from, from + 100);
+      }
+      controller.setFilter(filter);
+      controller.applyFilter();
+      result.filters.increment();
+    } else {
+      controller.undo();
+      result.undos.increment();
+    }
+  }
+
+  public static void main(String[] args) throws InterruptedException {
+    int threads = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_THREADS;
+    int seconds = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_SECONDS;
+    int[] mix = DEFAULT_MIX.clone();
+    if (args.length > 2) {
+      String[] weights = args[2].split(",");
+      if (weights.length != 3) {
+        throw new IllegalArgumentException("The mix must be three weights: add,filter,undo");
+      }
+      for (int i = 0; i < 3; i++) {
+        mix[i] = Integer.parseInt(weights[i].trim());
+      }
+    }
+
+    ExpenseTrackerModel model = new ExpenseTrackerModel();
+    ExpenseTrackerController controller = new ExpenseTrackerController(model, new HeadlessView());
+    Result result = new LoadGenerator(controller, threads, mix[0], mix[1], mix[2]).run(seconds * 1000L);
+    System.out.printf("%d threads, %.1f s: %d adds, %d filters, %d undos%n", threads,
+        result.getElapsedNanos() / 1e9, result.getAddCount(), result.getFilterCount(), result.getUndoCount());
+    System.out.printf("%.0f operations per second, %d transactions at the end%n",
+        result.getOperationsPerSecond(), model.getTransactionCount());
+    if (MetricsRegistry.getDefault().isEnabled()) {
+      System.out.println(MetricsRegistry.getDefault().getSummary());
+    }
+  }
+
+  public static class Result {
+    private final LongAdder adds = new LongAdder();
+    private final LongAdder filters = new LongAdder();
+    private final LongAdder undos = new LongAdder();
+    private long elapsedNanos;
+
+    public long getAddCount() {
+      return adds.sum();
+    }
+
+    public long getFilterCount() {
+      return filters.sum();
+    }
+
+    public long getUndoCount() {
+      return undos.sum();
+    }
+
+    public long getOperationCount() {
+      return getAddCount() + getFilterCount() + getUndoCount();
+    }
+
+    public long getElapsedNanos() {
+      return elapsedNanos;
+    }
+
+    public double getOperationsPerSecond() {
+      return elapsedNanos == 0 ? 0 : getOperationCount() * 1e9 / elapsedNanos;
+    }
+  }
+
+}
@@ -0,0 +1,142 @@
+package controller;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import javax.swing.SwingUtilities;
+
+import model.ExpenseTrackerModel;
+import model.Metrics.Counter;
+import model.Metrics.MetricsRegistry;
+
+/**
+ * Runs queries of the ExpenseTrackerModel, like filters, on a background
+ * thread so the event dispatch thread keeps painting while a large ledger is
+ * scanned. The queries read the model through ExpenseTrackerModel.read(), so
+ * transactions can still be added in the meantime.
+ *
+ * Only the latest query matters: submitting one cancels the one still
+ * running, and a result that is ready after a newer query was submitted is
+ * dropped. Cancelling interrupts the thread of the query, which the scans of
+ * the filters check every few thousand rows, so a stale scan stops early
+ * instead of running to the end. Results are passed to the event dispatch thread with
+ * SwingUtilities.invokeLater, coalesced so a burst of results is a single
+ * update of the view.
+ */
+public class QueryExecutor {
+
+  // Queries that were cancelled or whose result was dropped because a newer one was submitted
+  private static final Counter STALE_QUERIES = MetricsRegistry.getDefault().counter("controller.staleQueries");
+
+  private final ExpenseTrackerModel model;
+  private final ExecutorService executor;
+  // Number of the latest query, a query whose number is older is stale
+  private final AtomicLong latest = new AtomicLong();
+  private Future<?> running;
+  // The update waiting for the event dispatch thread, null if none is scheduled
+  private final AtomicReference<Runnable> pendingUpdate = new AtomicReference<>();
+
+  public QueryExecutor(ExpenseTrackerModel model) {
+    this.model = model;
+    this.executor = Executors.newSingleThreadExecutor(task -> {
+      Thread thread = new Thread(task, "expense-tracker-queries");
+      // Never keeps the application from exiting
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * Runs the query in the background and passes its result to onResult on the
+   * event dispatch thread, unless a newer query was submitted by then.
+   */
+  public synchronized <T> Future<?> submit(Supplier<T> query, Consumer<T> onResult) {
+    long number = latest.incrementAndGet();
+    if (running != null) {
+      running.cancel(true);
+    }
+    running = executor.submit(() -> {
+      T result;
+      try {
+        result = model.read(() -> {
+          // Checked before every attempt, a stale query is not retried
+          if (latest.get() != number) {
+            throw new StaleQueryException();
+          }
+          return query.get();
+        });
+      } catch (StaleQueryException | CancellationException e) {
+        STALE_QUERIES.increment();
+        return;
+      }
+      publish(() -> {
+        if (latest.get() == number) {
+          onResult.accept(result);
+        } else {
+          STALE_QUERIES.increment();
+        }
+      });
+    });
+    return running;
+  }
+
+  /**
+   * Runs a task that changes the model, like an import, on the same background
+   * thread. Unlike a query it is never cancelled or dropped, and queries
+   * submitted meanwhile run after it. Its result, or the exception it threw,
+   * is passed to the event dispatch thread.
+   */
+  public <T> Future<?> execute(Callable<T> task, Consumer<T> onResult, Consumer<Exception> onFailure) {
+    return executor.submit(() -> {
+      T result;
+      try {
+        result = task.call();
+      } catch (Exception e) {
+        SwingUtilities.invokeLater(() -> onFailure.accept(e));
+        return;
+      }
+      SwingUtilities.invokeLater(() -> onResult.accept(result));
+    });
+  }
+
+  /**
+   * Drops the result of the query still running, if any.
+   */
+  public synchronized void cancel() {
+    latest.incrementAndGet();
+    if (running != null) {
+      running.cancel(true);
+    }
+  }
+
+  public void shutdown() {
+    cancel();
+    executor.shutdownNow();
+  }
+
+  private void publish(Runnable update) {
+    // Only the first result schedules a call, later ones replace the update it runs
+    if (pendingUpdate.getAndSet(update) == null) {
+      SwingUtilities.invokeLater(() -> {
+        Runnable latestUpdate = pendingUpdate.getAndSet(null);
+        if (latestUpdate != null) {
+          latestUpdate.run();
+        }
+      });
+    }
+  }
+
+  private static class StaleQueryException extends RuntimeException {
+    StaleQueryException() {
+      super(null, null, false, false);
+    }
+  }
+
+}
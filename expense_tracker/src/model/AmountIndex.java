@@ -0,0 +1,100 @@
+package model;
+
+/**
+ * Ordered index from amount to the slots of the store, answering range
+ * queries by binary search.
+ *
+ * The entries are kept in SortedRuns. Amounts are stored as longs that sort
+ * like the amounts themselves, so the runs are the same as in the TimeIndex.
+ */
+class AmountIndex {
+
+  private SortedRuns entries = new SortedRuns();
+
+  void add(double amount, int slot) {
+    entries.add(key(amount), slot);
+  }
+
+  /**
+   * Adds the consecutive slots of a batch in bulk, they become a sorted run
+   * of their own.
+   *
+   * @param order the positions in batchAmounts ordered by amount, or null to sort them here
+   */
+  void addAll(double[] batchAmounts, int count, int firstSlot, int[] order) {
+    long[] keys = new long[count];
+    int[] slots = new int[count];
+    for (int i = 0; i < count; i++) {
+      int position = order != null ? order[i] : i;
+      keys[i] = key(batchAmounts[position]);
+      slots[i] = firstSlot + position;
+    }
+    entries.addAll(keys, slots, count, order != null);
+  }
+
+  AmountIndex copy() {
+    AmountIndex copy = new AmountIndex();
+    copy.entries = entries.copy();
+    return copy;
+  }
+
+  /**
+   * Merges the entries in place, see SortedRuns.orderedSlots().
+   *
+   * @return every slot, ordered by amount
+   */
+  int[] orderedSlots() {
+    return entries.orderedSlots();
+  }
+
+  /**
+   * Removes the entry of the last slot of the store.
+   */
+  void removeLast(double amount, int slot) {
+    entries.delete(key(amount), slot);
+  }
+
+  /**
+   * Removes the entries of every slot from firstSlot on in one pass.
+   */
+  void truncate(int firstSlot) {
+    entries.truncate(firstSlot);
+  }
+
+  void update(double oldAmount, double newAmount, int slot) {
+    if (key(oldAmount) == key(newAmount)) {
+      return;
+    }
+    entries.delete(key(oldAmount), slot);
+    entries.add(key(newAmount), slot);
+  }
+
+  void remap(int[] moved) {
+    entries.remap(moved);
+  }
+
+  void clear() {
+    entries.clear();
+  }
+
+  /**
+   * @return the number of entries with min <= amount <= max
+   */
+  int count(double min, double max) {
+    return min > max ? 0 : entries.count(key(min), key(max));
+  }
+
+  /**
+   * @return the slots with min <= amount <= max, in amount order within each run
+   */
+  int[] slots(double min, double max) {
+    return min > max ? new int[0] : entries.slots(key(min), key(max));
+  }
+
+  // Flips the bits of negative amounts, so the longs sort like the amounts
+  private static long key(double amount) {
+    long bits = Double.doubleToLongBits(amount);
+    return bits ^ ((bits >> 63) & Long.MAX_VALUE);
+  }
+
+}
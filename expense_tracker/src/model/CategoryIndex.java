@@ -0,0 +1,113 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * Posting lists from category code to the slots of the store holding that
+ * category.
+ *
+ * Slots are appended in increasing order, so every list stays sorted and a
+ * lookup costs time proportional to the number of matching slots. The
+ * postings of removed slots stay until the store is compacted, the store
+ * drops them when it maps the slots to rows.
+ */
+class CategoryIndex {
+
+  private int[][] slots = new int[8][];
+  private int[] counts = new int[8];
+
+  void add(int code, int slot) {
+    if (code >= slots.length) {
+      int capacity = Math.max(code + 1, slots.length * 2);
+      slots = Arrays.copyOf(slots, capacity);
+      counts = Arrays.copyOf(counts, capacity);
+    }
+    int[] list = slots[code];
+    if (list == null) {
+      list = slots[code] = new int[16];
+    } else if (counts[code] == list.length) {
+      list = slots[code] = Arrays.copyOf(list, list.length + (list.length >> 1));
+    }
+    list[counts[code]++] = slot;
+  }
+
+  /**
+   * Removes the last slot of the store, which is the last posting of its list.
+   */
+  void removeLast(int code, int slot) {
+    if (counts[code] > 0 && slots[code][counts[code] - 1] == slot) {
+      counts[code]--;
+    }
+  }
+
+  /**
+   * Removes every slot from firstSlot on, popping them off the end of the lists.
+   */
+  void truncate(int firstSlot) {
+    for (int c = 0; c < slots.length; c++) {
+      while (counts[c] > 0 && slots[c][counts[c] - 1] >= firstSlot) {
+        counts[c]--;
+      }
+    }
+  }
+
+  // Adds a slot that is not after every other one
+  void insert(int code, int slot) {
+    add(code, slot);
+    sortLast(code, slot);
+  }
+
+  // Moves the posting just added to the end of the list to its sorted place
+  private void sortLast(int code, int slot) {
+    int[] list = slots[code];
+    for (int i = counts[code] - 1; i > 0 && list[i - 1] > slot; i--) {
+      list[i] = list[i - 1];
+      list[i - 1] = slot;
+    }
+  }
+
+  // Moves a slot to the list of its new category, shifting the later postings
+  // of both lists, so it takes time in the number of their postings
+  void move(int oldCode, int newCode, int slot) {
+    if (oldCode == newCode) {
+      return;
+    }
+    int[] list = slots[oldCode];
+    int position = Arrays.binarySearch(list, 0, counts[oldCode], slot);
+    if (position >= 0) {
+      System.arraycopy(list, position + 1, list, position, counts[oldCode] - position - 1);
+      counts[oldCode]--;
+    }
+    insert(newCode, slot);
+  }
+
+  // The store was compacted, the slots keep their order and removed ones are -1
+  void remap(int[] moved) {
+    for (int c = 0; c < slots.length; c++) {
+      int[] list = slots[c];
+      int count = 0;
+      for (int i = 0; i < counts[c]; i++) {
+        int slot = moved[list[i]];
+        if (slot != -1) {
+          list[count++] = slot;
+        }
+      }
+      counts[c] = count;
+    }
+  }
+
+  void clear() {
+    Arrays.fill(counts, 0);
+  }
+
+  /**
+   * @return the sorted slots holding the category code, removed ones included
+   */
+  int[] slots(int code) {
+    if (code >= counts.length || counts[code] == 0) {
+      return new int[0];
+    }
+    return Arrays.copyOf(slots[code], counts[code]);
+  }
+
+}
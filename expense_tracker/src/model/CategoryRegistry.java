@@ -0,0 +1,163 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * The categories transactions can have, each with a compact integer code.
+ *
+ * Categories are matched ignoring case; the first spelling registered is the
+ * name reported for the code. The model, filters and indexes work with the
+ * codes, so comparing categories is comparing ints. Codes are never reused
+ * or removed, and they are only valid for the running application: storage
+ * writes the names and registers them again when it is read.
+ *
+ * Lookups do not lock and can run on any thread. Registering is rare and
+ * replaces the lookup table as a whole.
+ */
+public class CategoryRegistry {
+
+  /**
+   * The longest name a category can have. Names are ASCII letters, so this is
+   * also their length in bytes, which storage writes as an unsigned short.
+   */
+  public static final int MAX_NAME_LENGTH = 255;
+
+  private static final String[] BUILT_IN = {"food", "travel", "bills", "entertainment", "other"};
+  private static final CategoryRegistry DEFAULT = new CategoryRegistry(BUILT_IN);
+
+  private static final class Table {
+    final String[] names;
+    // Open addressing hash table of code + 1, 0 marks a free slot
+    final int[] slots;
+
+    Table(String[] names, int[] slots) {
+      this.names = names;
+      this.slots = slots;
+    }
+  }
+
+  private volatile Table table = new Table(new String[0], new int[16]);
+
+  public CategoryRegistry(String... categories) {
+    for (String category : categories) {
+      register(category);
+    }
+  }
+
+  /**
+   * @return the registry used by transactions, with the built-in categories registered
+   */
+  public static CategoryRegistry getDefault() {
+    return DEFAULT;
+  }
+
+  /**
+   * Registers a category, which has to consist of letters only, at most
+   * MAX_NAME_LENGTH of them.
+   *
+   * @return the code of the category, the existing one if it was registered before
+   */
+  public synchronized int register(String category) {
+    if (!isValidName(category)) {
+      throw new IllegalArgumentException("The category is not valid.");
+    }
+    Table current = table;
+    int code = find(current, category);
+    if (code != -1) {
+      return code;
+    }
+    if (current.names.length == Short.MAX_VALUE) {
+      throw new IllegalStateException("Too many distinct categories.");
+    }
+    String[] names = Arrays.copyOf(current.names, current.names.length + 1);
+    code = names.length - 1;
+    names[code] = category;
+    int[] slots = current.slots;
+    if (names.length * 2 > slots.length) {
+      slots = new int[slots.length * 2];
+      for (int i = 0; i < code; i++) {
+        insert(slots, names[i], i);
+      }
+    } else {
+      slots = slots.clone();
+    }
+    insert(slots, category, code);
+    table = new Table(names, slots);
+    return code;
+  }
+
+  /**
+   * @return the code of the category ignoring case, or -1 if it is not registered
+   */
+  public int lookup(String category) {
+    // Also keeps out strings that only equal a category ignoring case outside of ASCII
+    if (!isValidName(category)) {
+      return -1;
+    }
+    return find(table, category);
+  }
+
+  public boolean contains(String category) {
+    return lookup(category) != -1;
+  }
+
+  public String getName(int code) {
+    String[] names = table.names;
+    if (code < 0 || code >= names.length) {
+      throw new IndexOutOfBoundsException("Unknown category code: " + code);
+    }
+    return names[code];
+  }
+
+  /**
+   * @return the number of registered categories, codes range from 0 to this value - 1
+   */
+  public int size() {
+    return table.names.length;
+  }
+
+  private static int find(Table table, String category) {
+    int mask = table.slots.length - 1;
+    for (int slot = hash(category) & mask; ; slot = (slot + 1) & mask) {
+      int entry = table.slots[slot];
+      if (entry == 0) {
+        return -1;
+      }
+      if (table.names[entry - 1].equalsIgnoreCase(category)) {
+        return entry - 1;
+      }
+    }
+  }
+
+  private static void insert(int[] slots, String category, int code) {
+    int mask = slots.length - 1;
+    int slot = hash(category) & mask;
+    while (slots[slot] != 0) {
+      slot = (slot + 1) & mask;
+    }
+    slots[slot] = code + 1;
+  }
+
+  // Hash that ignores case, without creating a lower case copy
+  private static int hash(String category) {
+    int h = 0;
+    for (int i = 0; i < category.length(); i++) {
+      h = 31 * h + Character.toLowerCase(category.charAt(i));
+    }
+    return h ^ (h >>> 16);
+  }
+
+  private static boolean isValidName(String category) {
+    if (category == null || category.isEmpty() || category.length() > MAX_NAME_LENGTH) {
+      return false;
+    }
+    for (int i = 0; i < category.length(); i++) {
+      char c = category.charAt(i);
+      if (!((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z'))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+}
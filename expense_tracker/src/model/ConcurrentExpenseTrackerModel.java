@@ -0,0 +1,169 @@
+package model;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Transaction storage that many producer threads can append to at once,
+ * while readers take immutable point-in-time snapshots.
+ *
+ * Rows are stored column by column in fixed size chunks that are never moved.
+ * Appending claims a row with a single atomic increment, fills in its columns
+ * and marks it written, so producers never wait for each other. A snapshot
+ * covers the longest prefix of written rows; taking one only looks at the
+ * rows written since the last snapshot, and reading it never copies rows.
+ *
+ * Removing and clearing are rare (undo) and create a new version instead of
+ * touching the chunks: a removal adds the row to the sorted list of removed
+ * rows of the version, a clear starts new chunks. Snapshots keep the version
+ * they were taken from, so they do not see later changes.
+ *
+ * This model has no listeners or indexes. To show its transactions, add a
+ * snapshot to an ExpenseTrackerModel with snapshot().toBatch().
+ */
+public class ConcurrentExpenseTrackerModel {
+
+  private static final int CHUNK_BITS = 14;
+  private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+  private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+  private volatile Version version = new Version(new Rows(), new int[0], 0);
+
+  public void addTransaction(Transaction t) {
+    if (t == null) {
+      throw new IllegalArgumentException("The new transaction must be non-null.");
+    }
+    // An add racing with a clear lands in the cleared rows, as if it happened first
+    version.rows.append(t.getAmount(), t.getCreatedAt(), (short) t.getCategoryCode());
+  }
+
+  /**
+   * Removes the first stored transaction with the values of t, if there is one.
+   */
+  public synchronized void removeTransaction(Transaction t) {
+    Version current = version;
+    TransactionSnapshot snapshot = snapshot(current);
+    int index = snapshot.indexOf(t.withoutId());
+    if (index == -1) {
+      return;
+    }
+    int row = snapshot.physicalRow(index);
+    int[] removed = current.removed;
+    int insertAt = -Arrays.binarySearch(removed, row) - 1;
+    int[] next = new int[removed.length + 1];
+    System.arraycopy(removed, 0, next, 0, insertAt);
+    next[insertAt] = row;
+    System.arraycopy(removed, insertAt, next, insertAt + 1, removed.length - insertAt);
+    version = new Version(current.rows, next, current.number + 1);
+  }
+
+  public synchronized void clearTransactions() {
+    version = new Version(new Rows(), new int[0], version.number + 1);
+  }
+
+  /**
+   * @return an immutable view of the transactions added so far
+   */
+  public TransactionSnapshot snapshot() {
+    return snapshot(version);
+  }
+
+  public int getTransactionCount() {
+    return snapshot().size();
+  }
+
+  private TransactionSnapshot snapshot(Version current) {
+    return new TransactionSnapshot(current, current.rows.publish());
+  }
+
+  /**
+   * Rows appended since the last clear.
+   */
+  static final class Rows {
+    private final AtomicInteger reserved = new AtomicInteger();
+    private final AtomicInteger published = new AtomicInteger();
+    private volatile Chunk[] chunks = new Chunk[16];
+
+    void append(double amount, long createdAt, short code) {
+      int row = reserved.getAndIncrement();
+      if (row < 0) {
+        reserved.set(Integer.MIN_VALUE);
+        throw new IllegalStateException("Too many transactions.");
+      }
+      Chunk chunk = chunk(row >>> CHUNK_BITS);
+      int i = row & CHUNK_MASK;
+      chunk.amounts[i] = amount;
+      chunk.createdAt[i] = createdAt;
+      chunk.codes[i] = code;
+      chunk.written.lazySet(i, 1);
+    }
+
+    // Extends the published prefix over the rows written since, returns its length
+    int publish() {
+      int start = published.get();
+      int end = start;
+      int limit = reserved.get();
+      while (end < limit) {
+        Chunk chunk = chunk(end >>> CHUNK_BITS);
+        if (chunk.written.get(end & CHUNK_MASK) == 0) {
+          break;
+        }
+        end++;
+      }
+      return end == start ? start : published.accumulateAndGet(end, Math::max);
+    }
+
+    double amount(int row) {
+      return chunk(row >>> CHUNK_BITS).amounts[row & CHUNK_MASK];
+    }
+
+    long createdAt(int row) {
+      return chunk(row >>> CHUNK_BITS).createdAt[row & CHUNK_MASK];
+    }
+
+    short code(int row) {
+      return chunk(row >>> CHUNK_BITS).codes[row & CHUNK_MASK];
+    }
+
+    private Chunk chunk(int index) {
+      Chunk[] current = chunks;
+      // Chunks only have final fields, so a racy read sees them fully constructed
+      if (index < current.length && current[index] != null) {
+        return current[index];
+      }
+      synchronized (this) {
+        current = chunks;
+        if (index >= current.length) {
+          current = Arrays.copyOf(current, Math.max(current.length * 2, index + 1));
+        }
+        if (current[index] == null) {
+          current[index] = new Chunk();
+        }
+        chunks = current;
+        return current[index];
+      }
+    }
+  }
+
+  static final class Chunk {
+    final double[] amounts = new double[CHUNK_SIZE];
+    final long[] createdAt = new long[CHUNK_SIZE];
+    final short[] codes = new short[CHUNK_SIZE];
+    final AtomicIntegerArray written = new AtomicIntegerArray(CHUNK_SIZE);
+  }
+
+  static final class Version {
+    final Rows rows;
+    // Sorted rows that were removed
+    final int[] removed;
+    final long number;
+
+    Version(Rows rows, int[] removed, long number) {
+      this.rows = rows;
+      this.removed = removed;
+      this.number = number;
+    }
+  }
+
+}
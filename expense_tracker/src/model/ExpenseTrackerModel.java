@@ -1,37 +1,753 @@
 package model;
 
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
 
+import model.Metrics.Counter;
+import model.Metrics.LatencyHistogram;
+import model.Metrics.MetricsRegistry;
+
+/**
+ * The transactions of the expense tracker, with indexes for the queries of the filters.
+ *
+ * Changes are made on one thread at a time, usually the event dispatch
+ * thread, and reported to the listeners on that thread. Queries may also run
+ * on other threads through read(), e.g. a filter on a background thread.
+ */
 public class ExpenseTrackerModel {
 
+  // Optimistic attempts of a query in read() before it takes the read lock
+  private static final int OPTIMISTIC_READ_ATTEMPTS = 3;
+
+  // Undoing up to this many adds deletes their entries from the amount and
+  // time indexes one by one, each shifting the rest of its sorted run; more
+  // are dropped in one pass over the indexes
+  private static final int TRUNCATE_SEARCH_LIMIT = 64;
+
+  // The store is compacted once more than this share of its slots, as a
+  // power of two, were removed, so every compaction follows at least a
+  // quarter as many removals as it moves rows
+  private static final int COMPACT_SHIFT = 2;
+
+  private static final LatencyHistogram ADD_TIME = MetricsRegistry.getDefault().histogram("model.add");
+  private static final LatencyHistogram ADD_BATCH_TIME = MetricsRegistry.getDefault().histogram("model.addBatch");
+  private static final LatencyHistogram REMOVE_TIME = MetricsRegistry.getDefault().histogram("model.remove");
+  private static final LatencyHistogram UPDATE_TIME = MetricsRegistry.getDefault().histogram("model.update");
+  private static final LatencyHistogram CLEAR_TIME = MetricsRegistry.getDefault().histogram("model.clear");
+  private static final Counter ADDED_ROWS = MetricsRegistry.getDefault().counter("model.addedRows");
+  // Optimistic reads repeated because of a concurrent change, and reads that had to lock
+  private static final Counter READ_RETRIES = MetricsRegistry.getDefault().counter("model.readRetries");
+  private static final Counter LOCKED_READS = MetricsRegistry.getDefault().counter("model.lockedReads");
+
   //encapsulation - data integrity
-  private List<Transaction> transactions;
+  private TransactionStore transactions;
+  // Kept in sync with the store so category queries never scan it. The
+  // indexes refer to the slots of the store, which removals do not renumber.
+  private CategoryIndex categoryIndex;
+  private AmountIndex amountIndex;
+  private TimeIndex timeIndex;
+  private IdIndex idIndex;
+  // Totals and counts read by the view in constant time
+  private TransactionAggregates aggregates;
+  private List<ExpenseTrackerModelListener> listeners;
+  // Held for writing while a change is made, lets read() detect a concurrent change
+  private final StampedLock lock = new StampedLock();
+  // Records every change for undo and redo once a TransactionHistory is attached
+  private TransactionHistory history;
+  // IDs are handed out in increasing order and never reused for another transaction
+  private long nextId = 1;
+  // The last snapshot of getTransactions(), valid while no change was made since its stamp
+  private volatile VersionedCopy readOnlyCopy;
+
+  private static final class VersionedCopy {
+    final TransactionStore transactions;
+    // Optimistic read stamp of the lock, validate() fails once the model changed
+    final long stamp;
+
+    VersionedCopy(TransactionStore transactions, long stamp) {
+      this.transactions = transactions;
+      this.stamp = stamp;
+    }
+  }
+
+  /**
+   * The store together with its indexes, detached from the model when it is
+   * cleared so the history can put it back.
+   */
+  static final class Contents {
+    private final TransactionStore transactions;
+    private final CategoryIndex categoryIndex;
+    private final AmountIndex amountIndex;
+    private final TimeIndex timeIndex;
+    private final IdIndex idIndex;
+    private final TransactionAggregates aggregates;
+
+    private Contents(ExpenseTrackerModel model) {
+      transactions = model.transactions;
+      categoryIndex = model.categoryIndex;
+      amountIndex = model.amountIndex;
+      timeIndex = model.timeIndex;
+      idIndex = model.idIndex;
+      aggregates = model.aggregates;
+    }
+  }
 
   public ExpenseTrackerModel() {
-    transactions = new ArrayList<>(); 
+    transactions = new TransactionStore();
+    categoryIndex = new CategoryIndex();
+    amountIndex = new AmountIndex();
+    timeIndex = new TimeIndex();
+    idIndex = new IdIndex();
+    aggregates = new TransactionAggregates();
+    listeners = new CopyOnWriteArrayList<>();
   }
 
-  public void addTransaction(Transaction t) {
+  /**
+   * Runs a query from any thread while the model may be changed on another.
+   * The query first runs without locking and is repeated if a change was made
+   * meanwhile. After a few attempts it runs under the read lock, which holds
+   * changes back until it is done. The query must not change the model.
+   */
+  public <T> T read(Supplier<T> query) {
+    for (int attempt = 0; attempt < OPTIMISTIC_READ_ATTEMPTS; attempt++) {
+      long stamp = lock.tryOptimisticRead();
+      if (stamp == 0) {
+        continue;
+      }
+      try {
+        T result = query.get();
+        if (lock.validate(stamp)) {
+          return result;
+        }
+      } catch (RuntimeException e) {
+        // A concurrent change can make the query fail, only a real failure is reported
+        if (lock.validate(stamp)) {
+          throw e;
+        }
+      }
+      READ_RETRIES.increment();
+    }
+    LOCKED_READS.increment();
+    long stamp = lock.readLock();
+    try {
+      return query.get();
+    } finally {
+      lock.unlockRead(stamp);
+    }
+  }
+
+  public void addListener(ExpenseTrackerModelListener listener) {
+    listeners.add(listener);
+  }
+
+  public void removeListener(ExpenseTrackerModelListener listener) {
+    listeners.remove(listener);
+  }
+
+  /**
+   * @return the ID of the stored transaction
+   */
+  public long addTransaction(Transaction t) {
     // Perform input validation to guarantee that all transactions added are non-null.
     if (t == null) {
       throw new IllegalArgumentException("The new transaction must be non-null.");
     }
-    transactions.add(t);
+    long started = ADD_TIME.start();
+    int row;
+    long id;
+    long stamp = lock.writeLock();
+    try {
+      row = transactions.size();
+      id = idFor(t.getId());
+      int slot = transactions.append(t, id);
+      int code = transactions.categoryCodeAt(slot);
+      idIndex.put(id, slot);
+      categoryIndex.add(code, slot);
+      amountIndex.add(t.getAmount(), slot);
+      timeIndex.add(t.getCreatedAt(), slot);
+      aggregates.add(code, t.getAmount());
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+    if (history != null) {
+      history.recordAdd(row, 1);
+    }
+    for (ExpenseTrackerModelListener listener : listeners) {
+      listener.transactionsAdded(row, row);
+    }
+    ADDED_ROWS.increment();
+    ADD_TIME.stop(started);
+    return id;
+  }
+
+  /**
+   * Inserts a transaction at a row, the rows from there on move up by one.
+   * Used to put a removed transaction back where it was: the slot it was
+   * removed from is still between the rows around it, so it is reused
+   * without moving any other row. Only if that slot was compacted away the
+   * store is compacted again to make room, which takes time proportional to
+   * the rows.
+   */
+  public void insertTransactionAt(int row, Transaction t) {
+    if (t == null) {
+      throw new IllegalArgumentException("The new transaction must be non-null.");
+    }
+    long stamp = lock.writeLock();
+    try {
+      long id = idFor(t.getId());
+      int slot = transactions.removedSlotAt(row, id);
+      if (slot != -1) {
+        // The slot kept its entries in the category, amount and time indexes,
+        // with the values it held when it was removed
+        int oldCode = transactions.categoryCodeAt(slot);
+        double oldAmount = transactions.amountAt(slot);
+        long oldTime = transactions.timeAt(slot);
+        transactions.revive(slot, t, id);
+        categoryIndex.move(oldCode, t.getCategoryCode(), slot);
+        amountIndex.update(oldAmount, t.getAmount(), slot);
+        timeIndex.update(oldTime, t.getCreatedAt(), slot);
+      } else {
+        if (row == transactions.size()) {
+          slot = transactions.append(t, id);
+        } else {
+          remap(transactions.insert(row, t, id));
+          // The rows are in consecutive slots now, the new one in the slot of its row
+          slot = row;
+        }
+        categoryIndex.insert(t.getCategoryCode(), slot);
+        amountIndex.add(t.getAmount(), slot);
+        timeIndex.add(t.getCreatedAt(), slot);
+      }
+      idIndex.put(id, slot);
+      aggregates.add(t.getCategoryCode(), t.getAmount());
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+    if (history != null) {
+      history.recordInsert(row);
+    }
+    for (ExpenseTrackerModelListener listener : listeners) {
+      listener.transactionsAdded(row, row);
+    }
+  }
+
+  /**
+   * Adds every transaction of the batch at once. The indexes are updated in
+   * bulk and the listeners receive a single event for all the new rows.
+   */
+  public void addTransactions(TransactionBatch batch) {
+    if (batch == null) {
+      throw new IllegalArgumentException("The batch must be non-null.");
+    }
+    int count = batch.size();
+    if (count == 0) {
+      return;
+    }
+    long started = ADD_BATCH_TIME.start();
+    int firstRow;
+    long stamp = lock.writeLock();
+    try {
+      firstRow = transactions.size();
+      int firstSlot = transactions.getSlotCount();
+      long[] ids = new long[count];
+      for (int i = 0; i < count; i++) {
+        ids[i] = idFor(batch.ids != null ? batch.ids[i] : 0);
+        idIndex.put(ids[i], firstSlot + i);
+      }
+      transactions.appendAll(batch, ids);
+      for (int slot = firstSlot; slot < firstSlot + count; slot++) {
+        int code = transactions.categoryCodeAt(slot);
+        categoryIndex.add(code, slot);
+        aggregates.add(code, transactions.amountAt(slot));
+      }
+      amountIndex.addAll(batch.amounts(), count, firstSlot, batch.getAmountOrder());
+      timeIndex.addAll(batch.createdAt(), count, firstSlot);
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+    if (history != null) {
+      history.recordAdd(firstRow, count);
+    }
+    for (ExpenseTrackerModelListener listener : listeners) {
+      listener.transactionsAdded(firstRow, firstRow + count - 1);
+    }
+    ADDED_ROWS.add(count);
+    ADD_BATCH_TIME.stop(started);
   }
 
   public void removeTransaction(Transaction t) {
-    transactions.remove(t);
+    if (t != null) {
+      remove(() -> slotOf(t));
+    }
+  }
+
+  /**
+   * @return false if no transaction has the ID
+   */
+  public boolean removeTransactionById(long id) {
+    return remove(() -> idIndex.slot(id));
+  }
+
+  /**
+   * Removes the transaction at a row, without searching for it. Its slot in
+   * the store is only marked as removed, no other row or index entry moves
+   * until the store is compacted, which happens after a share of the rows
+   * was removed. Updating the row counts after the slot still takes time in
+   * the number of slots / 4096.
+   */
+  public void removeTransactionAt(int row) {
+    remove(() -> transactions.slot(row));
   }
 
+  // Removes the transaction in the slot found under the write lock, so it is
+  // still the one that was looked up when it is removed
+  private boolean remove(IntSupplier findSlot) {
+    long started = REMOVE_TIME.start();
+    int row;
+    Transaction removed;
+    long stamp = lock.writeLock();
+    try {
+      int slot = findSlot.getAsInt();
+      if (slot == -1) {
+        return false;
+      }
+      row = transactions.row(slot);
+      removed = history != null ? transactions.transactionAt(slot) : null;
+      // The entries of the slot in the category, amount and time indexes are
+      // skipped by the queries until the compaction drops them
+      idIndex.remove(transactions.idAt(slot));
+      aggregates.remove(transactions.categoryCodeAt(slot), transactions.amountAt(slot));
+      transactions.removeSlot(slot);
+      if (transactions.getRemovedCount() > transactions.getSlotCount() >> COMPACT_SHIFT) {
+        remap(transactions.compact());
+      }
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+    if (history != null) {
+      history.recordRemove(row, removed);
+    }
+    for (ExpenseTrackerModelListener listener : listeners) {
+      listener.transactionRemoved(row);
+    }
+    REMOVE_TIME.stop(started);
+    return true;
+  }
+
+  // A transaction read from the model is found by its ID, others by their values
+  private int slotOf(Transaction t) {
+    int slot = idIndex.slot(t.getId());
+    if (slot != -1 && transactions.transactionAt(slot).equals(t)) {
+      return slot;
+    }
+    int row = transactions.indexOfValues(t);
+    return row == -1 ? -1 : transactions.slot(row);
+  }
+
+  /**
+   * Removes every row from firstRow on, e.g. to undo the last adds. Their
+   * slots are dropped from the end of the store instead of being marked.
+   */
+  void removeTransactionsFrom(int firstRow) {
+    int size;
+    long stamp = lock.writeLock();
+    try {
+      size = transactions.size();
+      if (firstRow >= size) {
+        return;
+      }
+      // The removed slots among these still have their index entries, the
+      // columns keep their values so the entries are found the same way
+      int firstSlot = transactions.endSlot(firstRow);
+      int endSlot = transactions.getSlotCount();
+      if (endSlot - firstSlot <= TRUNCATE_SEARCH_LIMIT) {
+        for (int slot = endSlot - 1; slot >= firstSlot; slot--) {
+          categoryIndex.removeLast(transactions.categoryCodeAt(slot), slot);
+          amountIndex.removeLast(transactions.amountAt(slot), slot);
+          timeIndex.removeLast(transactions.timeAt(slot), slot);
+        }
+      } else {
+        categoryIndex.truncate(firstSlot);
+        amountIndex.truncate(firstSlot);
+        timeIndex.truncate(firstSlot);
+      }
+      for (int slot = firstSlot; slot < endSlot; slot++) {
+        if (!transactions.isRemoved(slot)) {
+          aggregates.remove(transactions.categoryCodeAt(slot), transactions.amountAt(slot));
+          idIndex.remove(transactions.idAt(slot));
+        }
+      }
+      transactions.truncate(firstRow);
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+    for (ExpenseTrackerModelListener listener : listeners) {
+      listener.transactionsRemoved(firstRow, size - 1);
+    }
+  }
+
+  /**
+   * Changes the amount and category of the transaction with the ID, it keeps
+   * its row, creation time and ID. Moving the slot to another category
+   * shifts the postings of both categories, and changing the amount scans
+   * the amount index entries with an equal amount for the slot.
+   *
+   * @return false if no transaction has the ID
+   * @throws IllegalArgumentException if the amount or category is not valid
+   */
+  public boolean updateTransaction(long id, double amount, String category) {
+    return update(() -> idIndex.slot(id), amount, category);
+  }
+
+  public void updateTransactionAt(int row, double amount, String category) {
+    update(() -> transactions.slot(row), amount, category);
+  }
+
+  // The slot and its old values are read under the write lock, like when removing
+  private boolean update(IntSupplier findSlot, double amount, String category) {
+    long started = UPDATE_TIME.start();
+    int row;
+    Transaction old;
+    long stamp = lock.writeLock();
+    try {
+      int slot = findSlot.getAsInt();
+      if (slot == -1) {
+        return false;
+      }
+      row = transactions.row(slot);
+      old = transactions.transactionAt(slot);
+      // Validates the new values like any other transaction
+      Transaction updated = new Transaction(amount, category, old.getCreatedAt());
+      int code = updated.getCategoryCode();
+      categoryIndex.move(old.getCategoryCode(), code, slot);
+      amountIndex.update(old.getAmount(), amount, slot);
+      aggregates.remove(old.getCategoryCode(), old.getAmount());
+      aggregates.add(code, amount);
+      transactions.update(slot, amount, code);
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+    if (history != null) {
+      history.recordUpdate(row, old);
+    }
+    for (ExpenseTrackerModelListener listener : listeners) {
+      listener.transactionUpdated(row);
+    }
+    UPDATE_TIME.stop(started);
+    return true;
+  }
+
+  /**
+   * @return a batch holding the rows from firstRow up to, but not including, endRow
+   */
+  TransactionBatch copyRows(int firstRow, int endRow) {
+    return transactions.copyRows(firstRow, endRow);
+  }
+
+  /**
+   * @return a read-only snapshot of the transactions. The same snapshot is
+   *     returned until the model changes, so scanning the model again, like
+   *     a plain filter does, copies the rows at most once per change.
+   */
   public List<Transaction> getTransactions() {
     //encapsulation - data integrity
-    return Collections.unmodifiableList(new ArrayList<>(transactions));
+    // The copy is a read-only TransactionStore, so callers can scan its columns directly
+    VersionedCopy cached = readOnlyCopy;
+    if (cached != null && lock.validate(cached.stamp)) {
+      return cached.transactions;
+    }
+    long stamp = lock.tryOptimisticRead();
+    if (stamp != 0) {
+      try {
+        TransactionStore copy = transactions.copy();
+        if (lock.validate(stamp)) {
+          readOnlyCopy = new VersionedCopy(copy, stamp);
+          return copy;
+        }
+      } catch (RuntimeException e) {
+        // A concurrent change, copied again under the read lock below
+      }
+    }
+    // Only another thread can have changed the model meanwhile, so this thread holds no read lock to deadlock on
+    stamp = lock.readLock();
+    try {
+      TransactionStore copy = transactions.copy();
+      readOnlyCopy = new VersionedCopy(copy, lock.tryConvertToOptimisticRead(stamp));
+      stamp = 0;
+      return copy;
+    } finally {
+      if (stamp != 0) {
+        lock.unlockRead(stamp);
+      }
+    }
+  }
+
+  /**
+   * Copies every transaction into a batch, together with their order by amount.
+   * Used to write the transactions to storage.
+   */
+  public TransactionBatch snapshot() {
+    return copyForSnapshot().get();
+  }
+
+  /**
+   * Copies the transactions and the amount index as they are now, under the
+   * read lock, and returns the work of snapshot() that is left: merging the
+   * copied index by amount and building the batch. That part only reads the
+   * copies, so it may run later on another thread while the model changes.
+   */
+  public Supplier<TransactionBatch> copyForSnapshot() {
+    TransactionStore store;
+    AmountIndex amounts;
+    long stamp = lock.readLock();
+    try {
+      store = transactions.copySlots();
+      amounts = amountIndex.copy();
+    } finally {
+      lock.unlockRead(stamp);
+    }
+    return () -> store.toBatch(store.rowsOf(amounts.orderedSlots()));
+  }
+
+  public Transaction getTransaction(int row) {
+    return transactions.get(row);
+  }
+
+  /**
+   * @return the transaction with the ID, or null if there is none
+   */
+  public Transaction getTransactionById(long id) {
+    int slot = idIndex.slot(id);
+    return slot == -1 ? null : transactions.transactionAt(slot);
+  }
+
+  /**
+   * @return the row of the transaction with the ID, or -1 if there is none
+   */
+  public int getRowForId(long id) {
+    int slot = idIndex.slot(id);
+    return slot == -1 ? -1 : transactions.row(slot);
+  }
+
+  public long getId(int row) {
+    return transactions.getId(row);
+  }
+
+  /**
+   * Looks up the rows of a category from the category index.
+   * Categories are matched ignoring case, like the CategoryFilter does.
+   *
+   * @return the matching rows in ascending order
+   */
+  public int[] getRowsForCategory(String category) {
+    int code = transactions.getCodeForCategory(category);
+    return code == -1 ? new int[0] : transactions.rowsOf(categoryIndex.slots(code));
+  }
+
+  /**
+   * @return the rows of the category with the given code in ascending order
+   */
+  public int[] getRowsForCategoryCode(int code) {
+    return transactions.rowsOf(categoryIndex.slots(code));
+  }
+
+  /**
+   * Looks up the rows with minAmount <= amount <= maxAmount from the amount index.
+   *
+   * @return the matching rows in ascending order
+   */
+  public int[] getRowsForAmountRange(double minAmount, double maxAmount) {
+    int[] slots = amountIndex.slots(minAmount, maxAmount);
+    Arrays.sort(slots);
+    return transactions.rowsOf(slots);
+  }
+
+  public int countRowsForAmountRange(double minAmount, double maxAmount) {
+    if (transactions.getRemovedCount() > 0) {
+      // The index still counts the entries of removed slots
+      return transactions.rowsOf(amountIndex.slots(minAmount, maxAmount)).length;
+    }
+    return amountIndex.count(minAmount, maxAmount);
+  }
+
+  /**
+   * Looks up the rows created between from and to (inclusive, epoch milliseconds) from the time index.
+   *
+   * @return the matching rows in ascending order
+   */
+  public int[] getRowsForTimeRange(long from, long to) {
+    int[] slots = timeIndex.slots(from, to);
+    Arrays.sort(slots);
+    return transactions.rowsOf(slots);
+  }
+
+  public int countRowsForTimeRange(long from, long to) {
+    if (transactions.getRemovedCount() > 0) {
+      return transactions.rowsOf(timeIndex.slots(from, to)).length;
+    }
+    return timeIndex.count(from, to);
+  }
+
+  public double getAmount(int row) {
+    return transactions.getAmount(row);
+  }
+
+  public String getCategory(int row) {
+    return transactions.getCategory(row);
+  }
+
+  /**
+   * @return the creation time of the row in epoch milliseconds
+   */
+  public long getCreatedAt(int row) {
+    return transactions.getCreatedAt(row);
+  }
+
+  public String getTimestamp(int row) {
+    return transactions.getTimestamp(row);
+  }
+
+  public int getCategoryCode(int row) {
+    return transactions.getCategoryCode(row);
+  }
+
+  public int getCategoryCodeCount() {
+    return transactions.getCategoryCodeCount();
+  }
+
+  public String getCategoryForCode(int code) {
+    return transactions.getCategoryForCode(code);
+  }
+
+  public int getTransactionCount() {
+    return transactions.size();
+  }
+
+  public double getTotalAmount() {
+    return aggregates.getTotal();
+  }
+
+  public double getAverageAmount() {
+    int count = aggregates.getCount();
+    return count == 0 ? 0 : aggregates.getTotal() / count;
+  }
+
+  /**
+   * Categories are matched ignoring case, like the CategoryFilter does.
+   */
+  public double getCategoryTotal(String category) {
+    int code = transactions.getCodeForCategory(category);
+    return code == -1 ? 0 : aggregates.getTotal(code);
+  }
+
+  public int getCategoryTransactionCount(String category) {
+    int code = transactions.getCodeForCategory(category);
+    return code == -1 ? 0 : aggregates.getCount(code);
+  }
+
+  public double getCategoryAverage(String category) {
+    int count = getCategoryTransactionCount(category);
+    return count == 0 ? 0 : getCategoryTotal(category) / count;
   }
 
   public void clearTransactions() {
-        transactions.clear();
+        long started = CLEAR_TIME.start();
+        if (history != null) {
+          // The history keeps the cleared contents, undoing the clear only puts them back
+          history.recordClear(detachContents());
+          CLEAR_TIME.stop(started);
+          return;
+        }
+        long stamp = lock.writeLock();
+        try {
+          transactions.reset();
+          categoryIndex.clear();
+          amountIndex.clear();
+          timeIndex.clear();
+          idIndex.clear();
+          aggregates.clear();
+        } finally {
+          lock.unlockWrite(stamp);
+        }
+        for (ExpenseTrackerModelListener listener : listeners) {
+          listener.transactionsCleared();
+        }
+        CLEAR_TIME.stop(started);
     }
 
+  /**
+   * Replaces the contents by empty ones and reports the model as cleared.
+   */
+  Contents detachContents() {
+    Contents detached;
+    long stamp = lock.writeLock();
+    try {
+      detached = new Contents(this);
+      transactions = new TransactionStore();
+      categoryIndex = new CategoryIndex();
+      amountIndex = new AmountIndex();
+      timeIndex = new TimeIndex();
+      idIndex = new IdIndex();
+      aggregates = new TransactionAggregates();
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+    for (ExpenseTrackerModelListener listener : listeners) {
+      listener.transactionsCleared();
+    }
+    return detached;
+  }
+
+  /**
+   * Puts detached contents back into the empty model.
+   */
+  void restoreContents(Contents contents) {
+    if (transactions.size() != 0) {
+      throw new IllegalStateException("Contents can only be restored into an empty model.");
+    }
+    long stamp = lock.writeLock();
+    try {
+      transactions = contents.transactions;
+      categoryIndex = contents.categoryIndex;
+      amountIndex = contents.amountIndex;
+      timeIndex = contents.timeIndex;
+      idIndex = contents.idIndex;
+      aggregates = contents.aggregates;
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+    if (transactions.size() > 0) {
+      for (ExpenseTrackerModelListener listener : listeners) {
+        listener.transactionsAdded(0, transactions.size() - 1);
+      }
+    }
+  }
+
+  // The store moved its rows to new slots, -1 for the removed ones
+  private void remap(int[] moved) {
+    idIndex.remap(moved);
+    categoryIndex.remap(moved);
+    amountIndex.remap(moved);
+    timeIndex.remap(moved);
+  }
+
+  // A transaction that was removed gets its ID back, e.g. when the removal is undone
+  private long idFor(long previousId) {
+    if (previousId > 0 && previousId < nextId && !idIndex.contains(previousId)) {
+      return previousId;
+    }
+    return nextId++;
+  }
+
+  void setHistory(TransactionHistory history) {
+    if (this.history != null && history != null) {
+      throw new IllegalStateException("The model already has a history.");
+    }
+    this.history = history;
+  }
+
 }
@@ -0,0 +1,34 @@
+package model;
+
+/**
+ * Receives the changes made to an ExpenseTrackerModel, so a view can update
+ * only the affected rows instead of redisplaying every transaction.
+ */
+public interface ExpenseTrackerModelListener {
+
+  public void transactionsAdded(int firstRow, int lastRow);
+
+  public void transactionRemoved(int row);
+
+  /**
+   * The rows from firstRow to lastRow were removed at once. By default they
+   * are reported one by one, starting with the last.
+   */
+  public default void transactionsRemoved(int firstRow, int lastRow) {
+    for (int row = lastRow; row >= firstRow; row--) {
+      transactionRemoved(row);
+    }
+  }
+
+  /**
+   * The amount or category of a row changed. By default this is reported as
+   * the row being removed and inserted again.
+   */
+  public default void transactionUpdated(int row) {
+    transactionRemoved(row);
+    transactionsAdded(row, row);
+  }
+
+  public void transactionsCleared();
+
+}
@@ -1,13 +1,22 @@
 package model.Filter;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
+import java.util.function.IntPredicate;
 
+import model.ExpenseTrackerModel;
 import model.Transaction;
+import model.TransactionStore;
+import model.Metrics.LatencyHistogram;
+import model.Metrics.MetricsRegistry;
 import controller.InputValidation;
 
-public class AmountFilter implements TransactionFilter{
-    private double amountFilter;
+public class AmountFilter implements TransactionRowFilter{
+    private static final LatencyHistogram FILTER_TIME = MetricsRegistry.getDefault().histogram("filter.amount");
+    // An exact amount filter is the range [amount, amount]
+    private double minAmount;
+    private double maxAmount;
 
     public AmountFilter(double amountFilter){
         // Since the AmountFilter constructor is public, 
@@ -15,19 +24,94 @@ public class AmountFilter implements TransactionFilter{
         if(!InputValidation.isValidAmount(amountFilter)){
             throw new IllegalArgumentException("Invalid amount filter");
         } else {
-            this.amountFilter = amountFilter;
+            this.minAmount = amountFilter;
+            this.maxAmount = amountFilter;
         }
     }
+
+    /**
+     * Matches every transaction with minAmount <= amount <= maxAmount.
+     */
+    public AmountFilter(double minAmount, double maxAmount){
+        if(Double.isNaN(minAmount) || Double.isNaN(maxAmount) || minAmount > maxAmount){
+            throw new IllegalArgumentException("Invalid amount filter");
+        }
+        this.minAmount = minAmount;
+        this.maxAmount = maxAmount;
+    }
+
+    /**
+     * Matches every transaction whose amount is within epsilon of the given amount.
+     */
+    public static AmountFilter withTolerance(double amountFilter, double epsilon){
+        if(!InputValidation.isValidAmount(amountFilter) || !(epsilon >= 0)){
+            throw new IllegalArgumentException("Invalid amount filter");
+        }
+        return new AmountFilter(amountFilter - epsilon, amountFilter + epsilon);
+    }
+
+    public double getMinAmount(){
+        return minAmount;
+    }
+
+    public double getMaxAmount(){
+        return maxAmount;
+    }
+
     @Override
     public List<Transaction> filter(List<Transaction> transactions){
-        List<Transaction> filteredTransactions = new ArrayList<>();
-        for(Transaction transaction : transactions){
-            // Your solution could use a different comparison here.
-            if(transaction.getAmount() == amountFilter){
-                filteredTransactions.add(transaction);
+        long started = FILTER_TIME.start();
+        try {
+            List<Transaction> filteredTransactions = new ArrayList<>();
+            if(transactions instanceof TransactionStore){
+                // Scan the amount column and only create views for the matching rows
+                TransactionStore store = (TransactionStore) transactions;
+                for(int row = 0; row < store.size(); row++){
+                    if(matches(store.getAmount(row))){
+                        filteredTransactions.add(store.get(row));
+                    }
+                }
+                return filteredTransactions;
+            }
+            for(Transaction transaction : transactions){
+                // Your solution could use a different comparison here.
+                if(matches(transaction.getAmount())){
+                    filteredTransactions.add(transaction);
+                }
             }
+            return filteredTransactions;
+        } finally {
+            FILTER_TIME.stop(started);
         }
-        return filteredTransactions;
     }
-    
+
+    // Answers from the amount index of the model with two binary searches
+    @Override
+    public BitSet filterRows(ExpenseTrackerModel model){
+        long started = FILTER_TIME.start();
+        try {
+            BitSet rows = new BitSet(model.getTransactionCount());
+            for(int row : model.getRowsForAmountRange(minAmount, maxAmount)){
+                rows.set(row);
+            }
+            return rows;
+        } finally {
+            FILTER_TIME.stop(started);
+        }
+    }
+
+    @Override
+    public int estimateRows(ExpenseTrackerModel model){
+        return model.countRowsForAmountRange(minAmount, maxAmount);
+    }
+
+    @Override
+    public IntPredicate rowMatcher(ExpenseTrackerModel model){
+        return row -> matches(model.getAmount(row));
+    }
+
+    private boolean matches(double amount){
+        return amount >= minAmount && amount <= maxAmount;
+    }
+
 }
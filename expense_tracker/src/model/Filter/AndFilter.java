@@ -0,0 +1,71 @@
+package model.Filter;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.IntPredicate;
+
+import model.ExpenseTrackerModel;
+import model.Transaction;
+
+/**
+ * Matches the transactions that match all of the given filters.
+ * Against the model the filters are evaluated in the order chosen by the QueryPlanner.
+ */
+public class AndFilter implements TransactionRowFilter {
+    private List<TransactionRowFilter> filters;
+
+    public AndFilter(TransactionFilter... filters) {
+        if (filters == null || filters.length == 0) {
+            throw new IllegalArgumentException("At least one filter is required");
+        }
+        this.filters = new ArrayList<>(filters.length);
+        for (TransactionFilter filter : filters) {
+            if (filter == null) {
+                throw new IllegalArgumentException("The filters must be non-null");
+            }
+            this.filters.add(TransactionRowFilter.of(filter));
+        }
+    }
+
+    public List<TransactionRowFilter> getFilters() {
+        return Collections.unmodifiableList(filters);
+    }
+
+    // Without a model there are no indexes, each filter narrows down the result of the previous one
+    @Override
+    public List<Transaction> filter(List<Transaction> transactions) {
+        List<Transaction> filteredTransactions = transactions;
+        for (TransactionRowFilter filter : filters) {
+            if (filteredTransactions.isEmpty()) {
+                break;
+            }
+            filteredTransactions = filter.filter(filteredTransactions);
+        }
+        return filteredTransactions;
+    }
+
+    @Override
+    public BitSet filterRows(ExpenseTrackerModel model) {
+        return QueryPlanner.and(model, filters);
+    }
+
+    @Override
+    public int estimateRows(ExpenseTrackerModel model) {
+        int estimate = model.getTransactionCount();
+        for (TransactionRowFilter filter : filters) {
+            estimate = Math.min(estimate, filter.estimateRows(model));
+        }
+        return estimate;
+    }
+
+    @Override
+    public IntPredicate rowMatcher(ExpenseTrackerModel model) {
+        IntPredicate matcher = filters.get(0).rowMatcher(model);
+        for (int i = 1; i < filters.size(); i++) {
+            matcher = matcher.and(filters.get(i).rowMatcher(model));
+        }
+        return matcher;
+    }
+}
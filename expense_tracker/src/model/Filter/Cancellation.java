@@ -0,0 +1,23 @@
+package model.Filter;
+
+import java.util.concurrent.CancellationException;
+
+/**
+ * Lets the long scans of the filters stop once the query running them was
+ * cancelled. The QueryExecutor cancels a query by interrupting its thread, so
+ * a scan checks that thread every CHECK_INTERVAL rows and throws a
+ * CancellationException. Outside of a query the thread is not interrupted and
+ * a check only reads its flag. The ParallelFilter stops its tasks itself.
+ */
+final class Cancellation {
+
+    // Rows scanned between two checks, a power of two
+    static final int CHECK_INTERVAL = 1 << 12;
+
+    static void check() {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new CancellationException("The query was cancelled.");
+        }
+    }
+
+}
@@ -1,13 +1,23 @@
 package model.Filter;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
+import java.util.function.IntPredicate;
 
+import model.CategoryRegistry;
+import model.ExpenseTrackerModel;
 import model.Transaction;
+import model.TransactionStore;
+import model.Metrics.LatencyHistogram;
+import model.Metrics.MetricsRegistry;
 import controller.InputValidation;
 
-public class CategoryFilter implements TransactionFilter {
+public class CategoryFilter implements TransactionRowFilter {
+    private static final LatencyHistogram FILTER_TIME = MetricsRegistry.getDefault().histogram("filter.category");
     private String categoryFilter;
+    // Registry code of the category, every comparison below is on codes
+    private int categoryCode;
 
     public CategoryFilter(String categoryFilter) {
         // Since the CategoryFilter constructor is public, 
@@ -16,20 +26,61 @@ public class CategoryFilter implements TransactionFilter {
             throw new IllegalArgumentException("Invalid category filter");
         }else{
             this.categoryFilter = categoryFilter;
+            this.categoryCode = CategoryRegistry.getDefault().lookup(categoryFilter);
         }
     }
 
     @Override
     public List<Transaction> filter(List<Transaction> transactions) {
+        long started = FILTER_TIME.start();
+        try {
+            List<Transaction> filteredTransactions = new ArrayList<>();
 
-        List<Transaction> filteredTransactions = new ArrayList<>();
+            if (transactions instanceof TransactionStore) {
+                // Compare the code column row by row
+                TransactionStore store = (TransactionStore) transactions;
+                for (int row = 0; row < store.size(); row++) {
+                    if (store.getCategoryCode(row) == categoryCode) {
+                        filteredTransactions.add(store.get(row));
+                    }
+                }
+                return filteredTransactions;
+            }
+
+            for (Transaction transaction : transactions) {
+                if (transaction.getCategoryCode() == categoryCode) {
+                    filteredTransactions.add(transaction);
+                }
+            }
+
+            return filteredTransactions;
+        } finally {
+            FILTER_TIME.stop(started);
+        }
+    }
 
-        for (Transaction transaction : transactions) {
-            if (transaction.getCategory().equalsIgnoreCase(categoryFilter)) {
-                filteredTransactions.add(transaction);
+    // Answers from the category index of the model, so the cost is proportional to the result size
+    @Override
+    public BitSet filterRows(ExpenseTrackerModel model) {
+        long started = FILTER_TIME.start();
+        try {
+            BitSet rows = new BitSet(model.getTransactionCount());
+            for (int row : model.getRowsForCategoryCode(categoryCode)) {
+                rows.set(row);
             }
+            return rows;
+        } finally {
+            FILTER_TIME.stop(started);
         }
+    }
+
+    @Override
+    public int estimateRows(ExpenseTrackerModel model) {
+        return model.getCategoryTransactionCount(categoryFilter);
+    }
 
-        return filteredTransactions;
+    @Override
+    public IntPredicate rowMatcher(ExpenseTrackerModel model) {
+        return row -> model.getCategoryCode(row) == categoryCode;
     }
 }
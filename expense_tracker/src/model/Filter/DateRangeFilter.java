@@ -0,0 +1,132 @@
+package model.Filter;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.function.IntPredicate;
+
+import model.ExpenseTrackerModel;
+import model.Transaction;
+import model.TransactionStore;
+import model.Metrics.LatencyHistogram;
+import model.Metrics.MetricsRegistry;
+
+/**
+ * Matches the transactions created between two points in time, both inclusive.
+ * The model answers it from its time index with two binary searches.
+ */
+public class DateRangeFilter implements TransactionRowFilter{
+    private static final LatencyHistogram FILTER_TIME = MetricsRegistry.getDefault().histogram("filter.date");
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("dd-MM-yyyy");
+
+    // Epoch milliseconds
+    private long from;
+    private long to;
+
+    public DateRangeFilter(long from, long to){
+        if(from > to){
+            throw new IllegalArgumentException("Invalid date filter");
+        }
+        this.from = from;
+        this.to = to;
+    }
+
+    /**
+     * Parses the bounds as dates (dd-MM-yyyy) or timestamps (dd-MM-yyyy HH:mm).
+     * A date as the lower bound starts at midnight, as the upper bound it
+     * includes the whole day.
+     */
+    public static DateRangeFilter between(String from, String to){
+        if(from == null || to == null){
+            throw new IllegalArgumentException("Invalid date filter");
+        }
+        try{
+            long start = from.trim().length() > 10 ? Transaction.parseTimestamp(from.trim())
+                    : startOfDay(LocalDate.parse(from.trim(), DATE_FORMAT));
+            long end = to.trim().length() > 10 ? Transaction.parseTimestamp(to.trim()) + 59999
+                    : startOfDay(LocalDate.parse(to.trim(), DATE_FORMAT).plusDays(1)) - 1;
+            return new DateRangeFilter(start, end);
+        } catch(DateTimeParseException e){
+            throw new IllegalArgumentException("Invalid date filter");
+        }
+    }
+
+    /**
+     * Matches the transactions of a calendar month, e.g. for a monthly statement.
+     */
+    public static DateRangeFilter month(YearMonth month){
+        return new DateRangeFilter(startOfDay(month.atDay(1)), startOfDay(month.plusMonths(1).atDay(1)) - 1);
+    }
+
+    public long getFrom(){
+        return from;
+    }
+
+    public long getTo(){
+        return to;
+    }
+
+    @Override
+    public List<Transaction> filter(List<Transaction> transactions){
+        long started = FILTER_TIME.start();
+        try {
+            List<Transaction> filteredTransactions = new ArrayList<>();
+            if(transactions instanceof TransactionStore){
+                // Scan the time column and only create views for the matching rows
+                TransactionStore store = (TransactionStore) transactions;
+                for(int row = 0; row < store.size(); row++){
+                    if(matches(store.getCreatedAt(row))){
+                        filteredTransactions.add(store.get(row));
+                    }
+                }
+                return filteredTransactions;
+            }
+            for(Transaction transaction : transactions){
+                if(matches(transaction.getCreatedAt())){
+                    filteredTransactions.add(transaction);
+                }
+            }
+            return filteredTransactions;
+        } finally {
+            FILTER_TIME.stop(started);
+        }
+    }
+
+    @Override
+    public BitSet filterRows(ExpenseTrackerModel model){
+        long started = FILTER_TIME.start();
+        try {
+            BitSet rows = new BitSet(model.getTransactionCount());
+            for(int row : model.getRowsForTimeRange(from, to)){
+                rows.set(row);
+            }
+            return rows;
+        } finally {
+            FILTER_TIME.stop(started);
+        }
+    }
+
+    @Override
+    public int estimateRows(ExpenseTrackerModel model){
+        return model.countRowsForTimeRange(from, to);
+    }
+
+    @Override
+    public IntPredicate rowMatcher(ExpenseTrackerModel model){
+        return row -> matches(model.getCreatedAt(row));
+    }
+
+    private boolean matches(long createdAt){
+        return createdAt >= from && createdAt <= to;
+    }
+
+    private static long startOfDay(LocalDate date){
+        return date.atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+}
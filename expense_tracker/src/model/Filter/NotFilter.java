@@ -0,0 +1,54 @@
+package model.Filter;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.IntPredicate;
+
+import model.ExpenseTrackerModel;
+import model.Transaction;
+
+/**
+ * Matches the transactions that do not match the given filter.
+ */
+public class NotFilter implements TransactionRowFilter {
+    private TransactionRowFilter filter;
+
+    public NotFilter(TransactionFilter filter) {
+        if (filter == null) {
+            throw new IllegalArgumentException("The filter must be non-null");
+        }
+        this.filter = TransactionRowFilter.of(filter);
+    }
+
+    @Override
+    public List<Transaction> filter(List<Transaction> transactions) {
+        Set<Transaction> excluded = new HashSet<>(filter.filter(transactions));
+        List<Transaction> filteredTransactions = new ArrayList<>();
+        for (Transaction transaction : transactions) {
+            if (!excluded.contains(transaction)) {
+                filteredTransactions.add(transaction);
+            }
+        }
+        return filteredTransactions;
+    }
+
+    @Override
+    public BitSet filterRows(ExpenseTrackerModel model) {
+        BitSet rows = filter.filterRows(model);
+        rows.flip(0, model.getTransactionCount());
+        return rows;
+    }
+
+    @Override
+    public int estimateRows(ExpenseTrackerModel model) {
+        return Math.max(0, model.getTransactionCount() - filter.estimateRows(model));
+    }
+
+    @Override
+    public IntPredicate rowMatcher(ExpenseTrackerModel model) {
+        return filter.rowMatcher(model).negate();
+    }
+}
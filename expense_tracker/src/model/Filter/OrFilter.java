@@ -0,0 +1,75 @@
+package model.Filter;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.IntPredicate;
+
+import model.ExpenseTrackerModel;
+import model.Transaction;
+
+/**
+ * Matches the transactions that match at least one of the given filters.
+ */
+public class OrFilter implements TransactionRowFilter {
+    private List<TransactionRowFilter> filters;
+
+    public OrFilter(TransactionFilter... filters) {
+        if (filters == null || filters.length == 0) {
+            throw new IllegalArgumentException("At least one filter is required");
+        }
+        this.filters = new ArrayList<>(filters.length);
+        for (TransactionFilter filter : filters) {
+            if (filter == null) {
+                throw new IllegalArgumentException("The filters must be non-null");
+            }
+            this.filters.add(TransactionRowFilter.of(filter));
+        }
+    }
+
+    @Override
+    public List<Transaction> filter(List<Transaction> transactions) {
+        Set<Transaction> matches = new HashSet<>();
+        for (TransactionRowFilter filter : filters) {
+            matches.addAll(filter.filter(transactions));
+        }
+        // Keep the order of the transactions list
+        List<Transaction> filteredTransactions = new ArrayList<>(matches.size());
+        for (Transaction transaction : transactions) {
+            if (matches.contains(transaction)) {
+                filteredTransactions.add(transaction);
+            }
+        }
+        return filteredTransactions;
+    }
+
+    // Every filter is answered from its index and merged into a single BitSet
+    @Override
+    public BitSet filterRows(ExpenseTrackerModel model) {
+        BitSet rows = filters.get(0).filterRows(model);
+        for (int i = 1; i < filters.size(); i++) {
+            rows.or(filters.get(i).filterRows(model));
+        }
+        return rows;
+    }
+
+    @Override
+    public int estimateRows(ExpenseTrackerModel model) {
+        long estimate = 0;
+        for (TransactionRowFilter filter : filters) {
+            estimate += filter.estimateRows(model);
+        }
+        return (int) Math.min(estimate, model.getTransactionCount());
+    }
+
+    @Override
+    public IntPredicate rowMatcher(ExpenseTrackerModel model) {
+        IntPredicate matcher = filters.get(0).rowMatcher(model);
+        for (int i = 1; i < filters.size(); i++) {
+            matcher = matcher.or(filters.get(i).rowMatcher(model));
+        }
+        return matcher;
+    }
+}
@@ -0,0 +1,222 @@
+package model.Filter;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntPredicate;
+
+import model.ExpenseTrackerModel;
+import model.Transaction;
+import model.Metrics.LatencyHistogram;
+import model.Metrics.MetricsRegistry;
+
+/**
+ * Evaluates any filter in parallel on large ledgers.
+ *
+ * The rows are split into segments that are checked with the row matcher of
+ * the filter in a ForkJoinPool. Every segment is a multiple of 64 rows, so it
+ * owns whole words of the resulting BitSet and the segments never write to the
+ * same word. Lists are split the same way and the per-segment matches are
+ * concatenated in order.
+ *
+ * The calling thread waits for the tasks interruptibly. When a query is
+ * cancelled by interrupting it, it throws a CancellationException and the
+ * tasks stop at their next check, every few thousand rows.
+ *
+ * Below the threshold, or when the index lookup of the filter is expected to
+ * be cheaper than a share of the scan, the filter is evaluated sequentially.
+ * The filter must decide every transaction on its own, which all filters of
+ * this package do.
+ */
+public class ParallelFilter implements TransactionRowFilter {
+    private static final LatencyHistogram FILTER_TIME = MetricsRegistry.getDefault().histogram("filter.parallel");
+    // Below this many rows the filter is evaluated sequentially
+    public static final int DEFAULT_THRESHOLD = 1 << 16;
+    // Rows per segment, a multiple of 64
+    static final int SEGMENT_SIZE = 1 << 14;
+
+    private TransactionRowFilter filter;
+    private ForkJoinPool pool;
+    private int threshold;
+
+    public ParallelFilter(TransactionFilter filter) {
+        this(filter, ForkJoinPool.commonPool(), DEFAULT_THRESHOLD);
+    }
+
+    public ParallelFilter(TransactionFilter filter, ForkJoinPool pool, int threshold) {
+        if (filter == null || pool == null) {
+            throw new IllegalArgumentException("The filter and the pool must be non-null");
+        }
+        if (threshold < 0) {
+            throw new IllegalArgumentException("The threshold must not be negative");
+        }
+        this.filter = TransactionRowFilter.of(filter);
+        this.pool = pool;
+        this.threshold = threshold;
+    }
+
+    public TransactionRowFilter getFilter() {
+        return filter;
+    }
+
+    @Override
+    public List<Transaction> filter(List<Transaction> transactions) {
+        long started = FILTER_TIME.start();
+        try {
+            int size = transactions.size();
+            if (size < threshold || pool.getParallelism() == 1) {
+                return filter.filter(transactions);
+            }
+            // One slot per segment, each task sets its own
+            List<List<Transaction>> matches = new ArrayList<>(Collections.nCopies(segments(size), null));
+            AtomicBoolean cancelled = new AtomicBoolean();
+            invoke(new ListTask(transactions, matches, cancelled, 0, matches.size()), cancelled);
+            int total = 0;
+            for (List<Transaction> segment : matches) {
+                total += segment.size();
+            }
+            List<Transaction> filteredTransactions = new ArrayList<>(total);
+            for (List<Transaction> segment : matches) {
+                filteredTransactions.addAll(segment);
+            }
+            return filteredTransactions;
+        } finally {
+            FILTER_TIME.stop(started);
+        }
+    }
+
+    @Override
+    public BitSet filterRows(ExpenseTrackerModel model) {
+        long started = FILTER_TIME.start();
+        try {
+            int count = model.getTransactionCount();
+            if (count < threshold || pool.getParallelism() == 1
+                    || filter.estimateRows(model) < count / pool.getParallelism()) {
+                return filter.filterRows(model);
+            }
+            long[] words = new long[(count + 63) >> 6];
+            AtomicBoolean cancelled = new AtomicBoolean();
+            invoke(new RowTask(filter.rowMatcher(model), words, count, cancelled, 0, segments(count)), cancelled);
+            return BitSet.valueOf(words);
+        } finally {
+            FILTER_TIME.stop(started);
+        }
+    }
+
+    @Override
+    public int estimateRows(ExpenseTrackerModel model) {
+        return filter.estimateRows(model);
+    }
+
+    @Override
+    public IntPredicate rowMatcher(ExpenseTrackerModel model) {
+        return filter.rowMatcher(model);
+    }
+
+    // Like pool.invoke(), which would hold back an interrupt until the tasks are done
+    private void invoke(ForkJoinTask<?> task, AtomicBoolean cancelled) {
+        Cancellation.check();
+        try {
+            pool.submit(task).get();
+        } catch (InterruptedException e) {
+            cancelled.set(true);
+            Thread.currentThread().interrupt();
+            throw new CancellationException("The query was cancelled.");
+        } catch (ExecutionException e) {
+            // Thrown as is, model.read() retries a scan that failed because of a concurrent change
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private static int segments(int rows) {
+        return (rows + SEGMENT_SIZE - 1) / SEGMENT_SIZE;
+    }
+
+    // Checks the rows of the segments [firstSegment, endSegment)
+    private static class RowTask extends RecursiveAction {
+        private final IntPredicate matcher;
+        private final long[] words;
+        private final int count;
+        private final AtomicBoolean cancelled;
+        private final int firstSegment;
+        private final int endSegment;
+
+        RowTask(IntPredicate matcher, long[] words, int count, AtomicBoolean cancelled, int firstSegment,
+                int endSegment) {
+            this.matcher = matcher;
+            this.words = words;
+            this.count = count;
+            this.cancelled = cancelled;
+            this.firstSegment = firstSegment;
+            this.endSegment = endSegment;
+        }
+
+        @Override
+        protected void compute() {
+            if (endSegment - firstSegment > 1) {
+                int middle = (firstSegment + endSegment) >>> 1;
+                invokeAll(new RowTask(matcher, words, count, cancelled, firstSegment, middle),
+                        new RowTask(matcher, words, count, cancelled, middle, endSegment));
+                return;
+            }
+            int end = Math.min(count, endSegment * SEGMENT_SIZE);
+            // Segments start at a multiple of the interval, so the first row is checked too
+            for (int row = firstSegment * SEGMENT_SIZE; row < end; row++) {
+                if ((row & (Cancellation.CHECK_INTERVAL - 1)) == 0 && cancelled.get()) {
+                    return;
+                }
+                if (matcher.test(row)) {
+                    words[row >> 6] |= 1L << row;
+                }
+            }
+        }
+    }
+
+    // Filters the segments [firstSegment, endSegment) of the list
+    private class ListTask extends RecursiveAction {
+        private final List<Transaction> transactions;
+        private final List<List<Transaction>> matches;
+        private final AtomicBoolean cancelled;
+        private final int firstSegment;
+        private final int endSegment;
+
+        ListTask(List<Transaction> transactions, List<List<Transaction>> matches, AtomicBoolean cancelled,
+                int firstSegment, int endSegment) {
+            this.transactions = transactions;
+            this.matches = matches;
+            this.cancelled = cancelled;
+            this.firstSegment = firstSegment;
+            this.endSegment = endSegment;
+        }
+
+        @Override
+        protected void compute() {
+            if (endSegment - firstSegment > 1) {
+                int middle = (firstSegment + endSegment) >>> 1;
+                invokeAll(new ListTask(transactions, matches, cancelled, firstSegment, middle),
+                        new ListTask(transactions, matches, cancelled, middle, endSegment));
+                return;
+            }
+            // Checked once per segment, the filter scans it on its own
+            if (cancelled.get()) {
+                return;
+            }
+            int end = Math.min(transactions.size(), endSegment * SEGMENT_SIZE);
+            matches.set(firstSegment, filter.filter(transactions.subList(firstSegment * SEGMENT_SIZE, end)));
+        }
+    }
+
+}
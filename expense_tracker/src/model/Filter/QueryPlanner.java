@@ -0,0 +1,85 @@
+package model.Filter;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.function.IntPredicate;
+
+import model.ExpenseTrackerModel;
+
+/**
+ * Evaluates a conjunction of row filters against the model.
+ *
+ * The filters are ordered by their estimated number of matches, and the most
+ * selective one is answered from the indexes of the model. Every following
+ * filter either checks the remaining candidate rows one by one, or, when its
+ * own index lookup is expected to be cheaper than that, is looked up and
+ * intersected with the candidates. Only one BitSet of candidates is kept for
+ * the whole evaluation.
+ */
+class QueryPlanner {
+
+    /**
+     * @return the filters ordered from the most to the least selective, with nested AndFilters flattened
+     */
+    static List<TransactionRowFilter> plan(ExpenseTrackerModel model, List<TransactionRowFilter> filters) {
+        List<TransactionRowFilter> conjuncts = new ArrayList<>();
+        flatten(filters, conjuncts);
+        int[] estimates = new int[conjuncts.size()];
+        for (int i = 0; i < estimates.length; i++) {
+            estimates[i] = conjuncts.get(i).estimateRows(model);
+        }
+        // Insertion sort, a conjunction only has a handful of filters
+        for (int i = 1; i < estimates.length; i++) {
+            int estimate = estimates[i];
+            TransactionRowFilter filter = conjuncts.get(i);
+            int j = i - 1;
+            while (j >= 0 && estimates[j] > estimate) {
+                estimates[j + 1] = estimates[j];
+                conjuncts.set(j + 1, conjuncts.get(j));
+                j--;
+            }
+            estimates[j + 1] = estimate;
+            conjuncts.set(j + 1, filter);
+        }
+        return conjuncts;
+    }
+
+    static BitSet and(ExpenseTrackerModel model, List<TransactionRowFilter> filters) {
+        List<TransactionRowFilter> plan = plan(model, filters);
+        BitSet candidates = plan.get(0).filterRows(model);
+        // Intersecting with an index lookup costs about the matches of the lookup
+        // plus one operation per word of the candidate BitSet
+        int words = (model.getTransactionCount() >> 6) + 1;
+        for (int i = 1; i < plan.size() && !candidates.isEmpty(); i++) {
+            TransactionRowFilter filter = plan.get(i);
+            int remaining = candidates.cardinality();
+            if (filter.estimateRows(model) + words < remaining) {
+                candidates.and(filter.filterRows(model));
+            } else {
+                IntPredicate matcher = filter.rowMatcher(model);
+                int checked = 0;
+                for (int row = candidates.nextSetBit(0); row >= 0; row = candidates.nextSetBit(row + 1)) {
+                    if ((++checked & (Cancellation.CHECK_INTERVAL - 1)) == 0) {
+                        Cancellation.check();
+                    }
+                    if (!matcher.test(row)) {
+                        candidates.clear(row);
+                    }
+                }
+            }
+        }
+        return candidates;
+    }
+
+    private static void flatten(List<TransactionRowFilter> filters, List<TransactionRowFilter> conjuncts) {
+        for (TransactionRowFilter filter : filters) {
+            if (filter instanceof AndFilter) {
+                flatten(((AndFilter) filter).getFilters(), conjuncts);
+            } else {
+                conjuncts.add(filter);
+            }
+        }
+    }
+
+}
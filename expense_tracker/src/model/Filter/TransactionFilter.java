@@ -2,6 +2,7 @@ package model.Filter;
 
 import java.util.List;
 
+import model.ExpenseTrackerModel;
 import model.Transaction;
 
 /**
@@ -13,4 +14,13 @@ public interface TransactionFilter {
 
   public List<Transaction> filter(List<Transaction> transactions);
 
+  /**
+   * Filters the transactions held by the model. Filters that can be answered
+   * from the indexes of the model override this, by default the filter is
+   * applied to a copy of the transactions.
+   */
+  public default List<Transaction> filter(ExpenseTrackerModel model) {
+    return filter(model.getTransactions());
+  }
+
 }
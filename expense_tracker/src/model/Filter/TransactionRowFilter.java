@@ -0,0 +1,100 @@
+package model.Filter;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.IntPredicate;
+
+import model.ExpenseTrackerModel;
+import model.Transaction;
+
+/**
+ * A TransactionFilter that reports its matches as row positions in the model.
+ *
+ * The controller highlights rows, so filters implementing this interface save
+ * it from mapping every matching Transaction back to its row. The estimate and
+ * the row matcher let the QueryPlanner choose between an index lookup and
+ * checking the rows another filter already selected.
+ */
+public interface TransactionRowFilter extends TransactionFilter {
+
+  /**
+   * @return a set bit for every row of the model that matches the filter
+   */
+  public BitSet filterRows(ExpenseTrackerModel model);
+
+  /**
+   * @return the estimated number of matching rows, this should be cheap to compute
+   */
+  public int estimateRows(ExpenseTrackerModel model);
+
+  /**
+   * @return a predicate telling whether a single row of the model matches
+   */
+  public IntPredicate rowMatcher(ExpenseTrackerModel model);
+
+  @Override
+  public default List<Transaction> filter(ExpenseTrackerModel model) {
+    BitSet rows = filterRows(model);
+    List<Transaction> filteredTransactions = new ArrayList<>(rows.cardinality());
+    for (int row = rows.nextSetBit(0); row >= 0; row = rows.nextSetBit(row + 1)) {
+      filteredTransactions.add(model.getTransaction(row));
+    }
+    return filteredTransactions;
+  }
+
+  /**
+   * Adapts a plain TransactionFilter. Its matches are mapped back to rows by
+   * their IDs, or by their values in a single hashed pass over the
+   * transactions for matches that were not read from the model.
+   */
+  public static TransactionRowFilter of(TransactionFilter filter) {
+    if (filter instanceof TransactionRowFilter) {
+      return (TransactionRowFilter) filter;
+    }
+    return new TransactionRowFilter() {
+      @Override
+      public List<Transaction> filter(List<Transaction> transactions) {
+        return filter.filter(transactions);
+      }
+
+      @Override
+      public BitSet filterRows(ExpenseTrackerModel model) {
+        List<Transaction> transactions = model.getTransactions();
+        BitSet rows = new BitSet(transactions.size());
+        Set<Transaction> matches = new HashSet<>();
+        for (Transaction transaction : filter.filter(model)) {
+          int row = model.getRowForId(transaction.getId());
+          if (row != -1 && model.getTransaction(row).equals(transaction)) {
+            rows.set(row);
+          } else {
+            matches.add(transaction.withoutId());
+          }
+        }
+        for (int row = 0; row < transactions.size() && !matches.isEmpty(); row++) {
+          if ((row & (Cancellation.CHECK_INTERVAL - 1)) == 0) {
+            Cancellation.check();
+          }
+          if (matches.contains(transactions.get(row).withoutId())) {
+            rows.set(row);
+          }
+        }
+        return rows;
+      }
+
+      // Nothing is known about the filter, so assume it matches everything
+      @Override
+      public int estimateRows(ExpenseTrackerModel model) {
+        return model.getTransactionCount();
+      }
+
+      @Override
+      public IntPredicate rowMatcher(ExpenseTrackerModel model) {
+        return filterRows(model)::get;
+      }
+    };
+  }
+
+}
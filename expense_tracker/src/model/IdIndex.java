@@ -0,0 +1,113 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * Hash index from transaction ID to the slot of its row in the store, so a
+ * transaction is found by its ID in constant time. Slots do not change when
+ * other rows are removed, only when the store is compacted.
+ *
+ * Open addressing with linear probing over primitive arrays, no boxed keys.
+ * ID 0 is never handed out and marks a free bucket. Removed entries are
+ * deleted by moving the following entries of the probe sequence back, so
+ * lookups never have to skip over deleted buckets.
+ */
+class IdIndex {
+
+  private long[] ids = new long[16];
+  private int[] slots = new int[16];
+  private int size;
+
+  void put(long id, int slot) {
+    if ((size + 1) * 2 > ids.length) {
+      resize(ids.length * 2);
+    }
+    int mask = ids.length - 1;
+    int bucket = bucket(id, mask);
+    while (ids[bucket] != 0 && ids[bucket] != id) {
+      bucket = (bucket + 1) & mask;
+    }
+    if (ids[bucket] == 0) {
+      size++;
+    }
+    ids[bucket] = id;
+    slots[bucket] = slot;
+  }
+
+  /**
+   * @return the slot of the ID, or -1 if no row has it
+   */
+  int slot(long id) {
+    if (id == 0) {
+      return -1;
+    }
+    int mask = ids.length - 1;
+    for (int bucket = bucket(id, mask); ids[bucket] != 0; bucket = (bucket + 1) & mask) {
+      if (ids[bucket] == id) {
+        return slots[bucket];
+      }
+    }
+    return -1;
+  }
+
+  boolean contains(long id) {
+    return slot(id) != -1;
+  }
+
+  void remove(long id) {
+    int mask = ids.length - 1;
+    int bucket = bucket(id, mask);
+    while (ids[bucket] != id) {
+      if (ids[bucket] == 0) {
+        return;
+      }
+      bucket = (bucket + 1) & mask;
+    }
+    // Move back the entries that would no longer be reached past the free bucket
+    int free = bucket;
+    for (int next = (free + 1) & mask; ids[next] != 0; next = (next + 1) & mask) {
+      int home = bucket(ids[next], mask);
+      if (((next - home) & mask) >= ((next - free) & mask)) {
+        ids[free] = ids[next];
+        slots[free] = slots[next];
+        free = next;
+      }
+    }
+    ids[free] = 0;
+    size--;
+  }
+
+  // The store was compacted, every ID left has a row in a new slot
+  void remap(int[] moved) {
+    for (int bucket = 0; bucket < ids.length; bucket++) {
+      if (ids[bucket] != 0) {
+        slots[bucket] = moved[slots[bucket]];
+      }
+    }
+  }
+
+  void clear() {
+    Arrays.fill(ids, 0);
+    size = 0;
+  }
+
+  private void resize(int capacity) {
+    long[] oldIds = ids;
+    int[] oldSlots = slots;
+    ids = new long[capacity];
+    slots = new int[capacity];
+    size = 0;
+    for (int bucket = 0; bucket < oldIds.length; bucket++) {
+      if (oldIds[bucket] != 0) {
+        put(oldIds[bucket], oldSlots[bucket]);
+      }
+    }
+  }
+
+  private static int bucket(long id, int mask) {
+    // IDs are consecutive, spread them over the table
+    long h = id * 0x9E3779B97F4A7C15L;
+    return (int) (h ^ (h >>> 32)) & mask;
+  }
+
+}
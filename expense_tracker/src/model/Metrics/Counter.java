@@ -0,0 +1,35 @@
+package model.Metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A count of events, cheap to increment from many threads at once.
+ */
+public class Counter {
+
+  private final MetricsRegistry registry;
+  private final LongAdder count = new LongAdder();
+
+  Counter(MetricsRegistry registry) {
+    this.registry = registry;
+  }
+
+  public void increment() {
+    add(1);
+  }
+
+  public void add(long n) {
+    if (registry.isEnabled()) {
+      count.add(n);
+    }
+  }
+
+  public long getCount() {
+    return count.sum();
+  }
+
+  void reset() {
+    count.reset();
+  }
+
+}
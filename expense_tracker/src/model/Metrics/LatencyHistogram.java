@@ -0,0 +1,133 @@
+package model.Metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts how long an operation takes, in buckets that grow with the latency.
+ *
+ * Every power of two of nanoseconds is split into four buckets, so a
+ * percentile is reported within 25% of the actual value with a fixed 2 KB of
+ * buckets and no allocation per measurement. Measure with
+ *   long started = histogram.start();
+ *   ...
+ *   histogram.stop(started);
+ * While the registry is disabled, start() does not even read the clock and
+ * stop() records nothing.
+ */
+public class LatencyHistogram {
+
+  // 4 buckets each for the values below 4 and for the powers of two from 2^2 to 2^63
+  private static final int BUCKETS = 4 * 63;
+
+  private final MetricsRegistry registry;
+  private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+  private final LongAdder count = new LongAdder();
+  private final LongAdder totalNanos = new LongAdder();
+  private final AtomicLong maxNanos = new AtomicLong();
+
+  LatencyHistogram(MetricsRegistry registry) {
+    this.registry = registry;
+  }
+
+  /**
+   * @return the start of a measurement, 0 while the registry is disabled
+   */
+  public long start() {
+    return registry.isEnabled() ? System.nanoTime() : 0;
+  }
+
+  public void stop(long started) {
+    if (started != 0) {
+      record(System.nanoTime() - started);
+    }
+  }
+
+  public void record(long nanos) {
+    if (!registry.isEnabled()) {
+      return;
+    }
+    nanos = Math.max(nanos, 0);
+    buckets.incrementAndGet(bucket(nanos));
+    count.increment();
+    totalNanos.add(nanos);
+    if (nanos > maxNanos.get()) {
+      maxNanos.accumulateAndGet(nanos, Math::max);
+    }
+  }
+
+  public long getCount() {
+    return count.sum();
+  }
+
+  public long getTotalNanos() {
+    return totalNanos.sum();
+  }
+
+  public long getMaxNanos() {
+    return maxNanos.get();
+  }
+
+  public double getMeanNanos() {
+    long n = getCount();
+    return n == 0 ? 0 : (double) getTotalNanos() / n;
+  }
+
+  /**
+   * @param percentile between 0 and 100, e.g. 99 for the 99th percentile
+   * @return the upper bound of the bucket holding the percentile, or 0 if nothing was measured
+   */
+  public long getPercentileNanos(double percentile) {
+    if (percentile < 0 || percentile > 100) {
+      throw new IllegalArgumentException("The percentile must be between 0 and 100.");
+    }
+    long[] counts = new long[BUCKETS];
+    long total = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      counts[i] = buckets.get(i);
+      total += counts[i];
+    }
+    if (total == 0) {
+      return 0;
+    }
+    long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += counts[i];
+      if (seen >= rank) {
+        return Math.min(upperBound(i), getMaxNanos());
+      }
+    }
+    return getMaxNanos();
+  }
+
+  void reset() {
+    for (int i = 0; i < BUCKETS; i++) {
+      buckets.set(i, 0);
+    }
+    count.reset();
+    totalNanos.reset();
+    maxNanos.set(0);
+  }
+
+  // Values below 4 have a bucket each, above that the two bits after the highest one pick the bucket
+  private static int bucket(long nanos) {
+    if (nanos < 4) {
+      return (int) nanos;
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+    return (exponent - 1) * 4 + (int) ((nanos >>> (exponent - 2)) & 3);
+  }
+
+  private static long upperBound(int bucket) {
+    if (bucket < 4) {
+      return bucket;
+    }
+    int exponent = bucket / 4 + 1;
+    long next = (5L + bucket % 4) << (exponent - 2);
+    // The last bucket ends at Long.MAX_VALUE
+    return next <= 0 ? Long.MAX_VALUE : next - 1;
+  }
+
+}
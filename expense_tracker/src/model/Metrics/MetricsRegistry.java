@@ -0,0 +1,180 @@
+package model.Metrics;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Counters and latency histograms of the hot paths: adds, filters, undos and
+ * table refreshes. The classes keep the ones they update in static fields, so
+ * updating them is a single LongAdder or array increment.
+ *
+ * Collection can be switched off entirely with -Dexpensetracker.metrics=false,
+ * or at runtime with setEnabled(false), e.g. through JMX. While it is off no
+ * clock is read and nothing is counted. The values can be read through the
+ * MBean registered by registerMBean() and written to a stream periodically
+ * with startDump().
+ */
+public class MetricsRegistry implements MetricsRegistryMBean {
+
+  public static final String ENABLED_PROPERTY = "expensetracker.metrics";
+  public static final String OBJECT_NAME = "expensetracker:type=Metrics";
+
+  private static final MetricsRegistry DEFAULT =
+      new MetricsRegistry(!"false".equalsIgnoreCase(System.getProperty(ENABLED_PROPERTY)));
+
+  private volatile boolean enabled;
+  private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+  private final Map<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+  private ScheduledExecutorService dumper;
+
+  public MetricsRegistry(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  /**
+   * @return the registry the model, filters, controller and view report to
+   */
+  public static MetricsRegistry getDefault() {
+    return DEFAULT;
+  }
+
+  /**
+   * @return the counter with the name, created on first use
+   */
+  public Counter counter(String name) {
+    return counters.computeIfAbsent(name, n -> new Counter(this));
+  }
+
+  /**
+   * @return the histogram with the name, created on first use
+   */
+  public LatencyHistogram histogram(String name) {
+    return histograms.computeIfAbsent(name, n -> new LatencyHistogram(this));
+  }
+
+  @Override
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  @Override
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  @Override
+  public String[] getNames() {
+    TreeSet<String> names = new TreeSet<>(counters.keySet());
+    names.addAll(histograms.keySet());
+    return names.toArray(new String[0]);
+  }
+
+  @Override
+  public String getSummary() {
+    return String.join("\n", summaryLines());
+  }
+
+  @Override
+  public long getCount(String name) {
+    Counter counter = counters.get(name);
+    if (counter != null) {
+      return counter.getCount();
+    }
+    LatencyHistogram histogram = histograms.get(name);
+    if (histogram != null) {
+      return histogram.getCount();
+    }
+    throw new IllegalArgumentException("No metric is named " + name);
+  }
+
+  @Override
+  public double getPercentileMillis(String name, double percentile) {
+    LatencyHistogram histogram = histograms.get(name);
+    if (histogram == null) {
+      throw new IllegalArgumentException("No histogram is named " + name);
+    }
+    return histogram.getPercentileNanos(percentile) / 1e6;
+  }
+
+  @Override
+  public void reset() {
+    for (Counter counter : counters.values()) {
+      counter.reset();
+    }
+    for (LatencyHistogram histogram : histograms.values()) {
+      histogram.reset();
+    }
+  }
+
+  /**
+   * Registers the registry with the platform MBean server, the default
+   * registry is registered as OBJECT_NAME.
+   */
+  public void registerMBean(String objectName) throws JMException {
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    ObjectName name = new ObjectName(objectName);
+    if (!server.isRegistered(name)) {
+      server.registerMBean(this, name);
+    }
+  }
+
+  /**
+   * Writes the summary to the stream every period, on a daemon thread, until stopDump() is called.
+   */
+  public synchronized void startDump(long periodMillis, PrintStream out) {
+    if (periodMillis <= 0) {
+      throw new IllegalArgumentException("The period must be positive.");
+    }
+    stopDump();
+    dumper = Executors.newSingleThreadScheduledExecutor(task -> {
+      Thread thread = new Thread(task, "expense-tracker-metrics");
+      thread.setDaemon(true);
+      return thread;
+    });
+    dumper.scheduleAtFixedRate(() -> {
+      if (enabled) {
+        for (String line : summaryLines()) {
+          out.println(line);
+        }
+      }
+    }, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+  }
+
+  public synchronized void stopDump() {
+    if (dumper != null) {
+      dumper.shutdownNow();
+      dumper = null;
+    }
+  }
+
+  // Only the metrics that were updated, histogram latencies in microseconds
+  private List<String> summaryLines() {
+    List<String> lines = new ArrayList<>();
+    for (String name : getNames()) {
+      Counter counter = counters.get(name);
+      if (counter != null && counter.getCount() > 0) {
+        lines.add(String.format("%s count=%d", name, counter.getCount()));
+      }
+      LatencyHistogram histogram = histograms.get(name);
+      if (histogram != null && histogram.getCount() > 0) {
+        lines.add(String.format("%s count=%d mean=%.1fus p50=%.1fus p99=%.1fus max=%.1fus", name,
+            histogram.getCount(), histogram.getMeanNanos() / 1e3, histogram.getPercentileNanos(50) / 1e3,
+            histogram.getPercentileNanos(99) / 1e3, histogram.getMaxNanos() / 1e3));
+      }
+    }
+    return lines;
+  }
+
+}
@@ -0,0 +1,28 @@
+package model.Metrics;
+
+/**
+ * The JMX view of a MetricsRegistry, registered as expensetracker:type=Metrics.
+ */
+public interface MetricsRegistryMBean {
+
+  public boolean isEnabled();
+
+  public void setEnabled(boolean enabled);
+
+  public String[] getNames();
+
+  /**
+   * @return one line per counter and histogram, as written by the periodic dump
+   */
+  public String getSummary();
+
+  /**
+   * @return the count of a counter, or the number of measurements of a histogram
+   */
+  public long getCount(String name);
+
+  public double getPercentileMillis(String name, double percentile);
+
+  public void reset();
+
+}
@@ -0,0 +1,266 @@
+package model.Persistence;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+import java.util.zip.CRC32;
+
+import controller.InputValidation;
+import model.CategoryRegistry;
+import model.TransactionBatch;
+
+/**
+ * Binary snapshot of the transactions of the model.
+ *
+ * The transactions are stored column by column in native (little endian)
+ * byte order, so loading maps every column with FileChannel.map and copies it
+ * into an array in bulk, without parsing individual records. The snapshot
+ * also holds the rows ordered by amount, so the amount index does not have
+ * to be sorted again on startup.
+ *
+ * Layout:
+ *   header     magic (int), version (int), log generation (long), rows (int), categories (int)
+ *   categories length (unsigned short) and UTF-8 name of every category code
+ *   padding    up to a multiple of 8 bytes
+ *   columns    amounts (double[rows]), creation times (long[rows]),
+ *              amount order (int[rows]), category codes (short[rows])
+ *   checksum   CRC32 of everything before it (int)
+ *
+ * The log generation is the first log segment that is not folded into the
+ * snapshot. A snapshot is written to a temporary file and renamed into
+ * place once it is on disk, so a crash never leaves a partial snapshot.
+ *
+ * The columns are loaded without validating them row by row again, so
+ * reading checks the checksum and every field the model relies on: the
+ * counts, the category names and codes, the amounts and that the amount
+ * order is a sorted permutation of the rows. A damaged snapshot fails with
+ * an IOException instead of corrupting the model.
+ */
+public class SnapshotFile {
+
+  private static final int MAGIC = 0x45545331;
+  private static final int VERSION = 2;
+  private static final ByteOrder ORDER = ByteOrder.LITTLE_ENDIAN;
+  private static final int CHUNK_SIZE = 1 << 20;
+
+  private final TransactionBatch transactions;
+  private final long logGeneration;
+
+  private SnapshotFile(TransactionBatch transactions, long logGeneration) {
+    this.transactions = transactions;
+    this.logGeneration = logGeneration;
+  }
+
+  public TransactionBatch getTransactions() {
+    return transactions;
+  }
+
+  public long getLogGeneration() {
+    return logGeneration;
+  }
+
+  public static SnapshotFile read(Path file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      long fileSize = channel.size();
+      ByteBuffer header = ByteBuffer.allocate(24).order(ORDER);
+      readFully(channel, header, 0);
+      header.flip();
+      if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+        throw new IOException("Not a transaction snapshot: " + file);
+      }
+      long logGeneration = header.getLong();
+      int rows = header.getInt();
+      int categoryCount = header.getInt();
+      // Category codes are shorts
+      if (rows < 0 || categoryCount < 0 || categoryCount > Short.MAX_VALUE + 1) {
+        throw new IOException("Corrupt transaction snapshot: " + file);
+      }
+      checkChecksum(channel, fileSize, file);
+      long dataEnd = fileSize - 4;
+
+      long position = header.capacity();
+      String[] categories = new String[categoryCount];
+      ByteBuffer length = ByteBuffer.allocate(2).order(ORDER);
+      for (int code = 0; code < categoryCount; code++) {
+        length.clear();
+        readFully(channel, length, position);
+        // Written as a short, names of up to 65535 bytes read back
+        ByteBuffer name = ByteBuffer.allocate(Short.toUnsignedInt(length.flip().getShort()));
+        if (position + 2 + name.capacity() > dataEnd) {
+          throw new IOException("Truncated transaction snapshot: " + file);
+        }
+        readFully(channel, name, position + 2);
+        categories[code] = new String(name.array(), StandardCharsets.UTF_8);
+        // Registered like adding the batch would, but failing as a corrupt file
+        try {
+          CategoryRegistry.getDefault().register(categories[code]);
+        } catch (IllegalArgumentException | IllegalStateException e) {
+          throw new IOException("Invalid category in transaction snapshot: " + file, e);
+        }
+        position += 2 + name.capacity();
+      }
+      position = align(position);
+      if (position + (long) rows * 22 != dataEnd) {
+        throw new IOException("Truncated transaction snapshot: " + file);
+      }
+
+      double[] amounts = new double[rows];
+      map(channel, position, rows * 8L).asDoubleBuffer().get(amounts);
+      position += rows * 8L;
+      long[] createdAt = new long[rows];
+      map(channel, position, rows * 8L).asLongBuffer().get(createdAt);
+      position += rows * 8L;
+      int[] amountOrder = new int[rows];
+      map(channel, position, rows * 4L).asIntBuffer().get(amountOrder);
+      position += rows * 4L;
+      short[] categoryCodes = new short[rows];
+      map(channel, position, rows * 2L).asShortBuffer().get(categoryCodes);
+      checkColumns(amounts, amountOrder, categoryCodes, categoryCount, file);
+
+      TransactionBatch batch = TransactionBatch.wrap(amounts, createdAt, categoryCodes, categories, rows, amountOrder);
+      return new SnapshotFile(batch, logGeneration);
+    }
+  }
+
+  /**
+   * Writes the transactions to the file, replacing it atomically once the new snapshot is on disk.
+   */
+  public static void write(Path file, TransactionBatch transactions, long logGeneration) throws IOException {
+    int rows = transactions.size();
+    int[] amountOrder = transactions.getAmountOrder();
+    if (amountOrder == null) {
+      throw new IllegalArgumentException("The snapshot needs the order of the transactions by amount.");
+    }
+    Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+    try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+      ByteBuffer buffer = ByteBuffer.allocateDirect(CHUNK_SIZE).order(ORDER);
+      CRC32 crc = new CRC32();
+      buffer.putInt(MAGIC).putInt(VERSION).putLong(logGeneration).putInt(rows)
+          .putInt(transactions.getCategoryCodeCount());
+      for (int code = 0; code < transactions.getCategoryCodeCount(); code++) {
+        byte[] name = transactions.getCategoryForCode(code).getBytes(StandardCharsets.UTF_8);
+        if (name.length > 0xFFFF) {
+          throw new IllegalArgumentException("A category name is too long for the snapshot.");
+        }
+        ensureRemaining(channel, buffer, crc, 2 + name.length);
+        buffer.putShort((short) name.length).put(name);
+      }
+      long written = channel.position() + buffer.position();
+      ensureRemaining(channel, buffer, crc, 8);
+      for (long i = written; i < align(written); i++) {
+        buffer.put((byte) 0);
+      }
+
+      for (int row = 0; row < rows; row++) {
+        ensureRemaining(channel, buffer, crc, 8);
+        buffer.putDouble(transactions.getAmount(row));
+      }
+      for (int row = 0; row < rows; row++) {
+        ensureRemaining(channel, buffer, crc, 8);
+        buffer.putLong(transactions.getCreatedAt(row));
+      }
+      for (int row = 0; row < rows; row++) {
+        ensureRemaining(channel, buffer, crc, 4);
+        buffer.putInt(amountOrder[row]);
+      }
+      for (int row = 0; row < rows; row++) {
+        ensureRemaining(channel, buffer, crc, 2);
+        buffer.putShort((short) transactions.getCategoryCode(row));
+      }
+      ensureRemaining(channel, buffer, crc, 4);
+      crc.update(buffer.duplicate().flip());
+      buffer.putInt((int) crc.getValue());
+      drain(channel, buffer, null);
+      channel.force(true);
+    }
+    Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  private static MappedByteBuffer map(FileChannel channel, long position, long size) throws IOException {
+    MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+    buffer.order(ORDER);
+    return buffer;
+  }
+
+  private static long align(long position) {
+    return (position + 7) & ~7L;
+  }
+
+  // Compares the CRC32 of the file up to its last 4 bytes with the checksum stored there
+  private static void checkChecksum(FileChannel channel, long fileSize, Path file) throws IOException {
+    if (fileSize < 28) {
+      throw new IOException("Truncated transaction snapshot: " + file);
+    }
+    CRC32 crc = new CRC32();
+    for (long position = 0; position < fileSize - 4; position += CHUNK_SIZE) {
+      crc.update(map(channel, position, Math.min(CHUNK_SIZE, fileSize - 4 - position)));
+    }
+    ByteBuffer checksum = ByteBuffer.allocate(4).order(ORDER);
+    readFully(channel, checksum, fileSize - 4);
+    if (checksum.flip().getInt() != (int) crc.getValue()) {
+      throw new IOException("Corrupt transaction snapshot, the checksum does not match: " + file);
+    }
+  }
+
+  // The batch is wrapped without validation, so the columns are checked here
+  private static void checkColumns(double[] amounts, int[] amountOrder, short[] categoryCodes, int categoryCount,
+      Path file) throws IOException {
+    for (int row = 0; row < amounts.length; row++) {
+      if (!InputValidation.isValidAmount(amounts[row])) {
+        throw new IOException("Invalid amount in transaction snapshot: " + file);
+      }
+      if (categoryCodes[row] < 0 || categoryCodes[row] >= categoryCount) {
+        throw new IOException("Unknown category code in transaction snapshot: " + file);
+      }
+    }
+    // The amount index takes the order as it is, it must hold every row once, by ascending amount
+    BitSet seen = new BitSet(amountOrder.length);
+    for (int i = 0; i < amountOrder.length; i++) {
+      int row = amountOrder[i];
+      if (row < 0 || row >= amountOrder.length || seen.get(row)
+          || (i > 0 && amounts[amountOrder[i - 1]] > amounts[row])) {
+        throw new IOException("Corrupt amount order in transaction snapshot: " + file);
+      }
+      seen.set(row);
+    }
+  }
+
+  private static void ensureRemaining(FileChannel channel, ByteBuffer buffer, CRC32 crc, int bytes)
+      throws IOException {
+    if (buffer.remaining() < bytes) {
+      drain(channel, buffer, crc);
+    }
+  }
+
+  // Writes the buffer, adding its bytes to the checksum unless crc is null
+  private static void drain(FileChannel channel, ByteBuffer buffer, CRC32 crc) throws IOException {
+    buffer.flip();
+    if (crc != null) {
+      crc.update(buffer.duplicate());
+    }
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    buffer.clear();
+  }
+
+  private static void readFully(FileChannel channel, ByteBuffer target, long position) throws IOException {
+    while (target.hasRemaining()) {
+      int read = channel.read(target, position);
+      if (read < 0) {
+        throw new IOException("Truncated transaction snapshot");
+      }
+      position += read;
+    }
+  }
+
+}
@@ -0,0 +1,237 @@
+package model.Persistence;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import model.ExpenseTrackerModel;
+import model.ExpenseTrackerModelListener;
+import model.TransactionBatch;
+
+/**
+ * Keeps the transactions of a model in a directory, as a snapshot plus the
+ * log segments written since the snapshot was taken.
+ *
+ *   snapshot.bin      the SnapshotFile, naming the first segment it does not contain
+ *   log-<n>.bin       TransactionLog segments, numbered by generation
+ *
+ * Opening loads the snapshot in bulk and only replays the segments written
+ * after it, so startup does not depend on how long the history is. Once the
+ * current segment holds the compaction threshold of records, logging moves on
+ * to a new segment and the columns of the model are copied; the copy is
+ * ordered and written as the new snapshot on a background thread, which then deletes the folded segments.
+ * A crash during compaction leaves the old snapshot and all its segments
+ * in place.
+ */
+public class TransactionDatabase implements ExpenseTrackerModelListener, Closeable {
+
+  public static final long DEFAULT_COMPACTION_THRESHOLD = 1_000_000;
+
+  private static final String SNAPSHOT = "snapshot.bin";
+  private static final String SEGMENT_PREFIX = "log-";
+  private static final String SEGMENT_SUFFIX = ".bin";
+
+  private final Path directory;
+  private final ExpenseTrackerModel model;
+  private final long compactionThreshold;
+  private final ExecutorService compactor;
+  private TransactionLog log;
+  private long generation;
+  private long segmentRecords;
+  private Future<?> compaction;
+
+  private TransactionDatabase(Path directory, ExpenseTrackerModel model, long compactionThreshold) {
+    this.directory = directory;
+    this.model = model;
+    this.compactionThreshold = compactionThreshold;
+    this.compactor = Executors.newSingleThreadExecutor(task -> {
+      Thread thread = new Thread(task, "TransactionDatabase compactor");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  public static TransactionDatabase open(Path directory, ExpenseTrackerModel model) throws IOException {
+    return open(directory, model, TransactionLog.DEFAULT_FLUSH_INTERVAL_MILLIS, TransactionLog.DEFAULT_BATCH_SIZE,
+        DEFAULT_COMPACTION_THRESHOLD);
+  }
+
+  /**
+   * Loads the transactions stored in the directory into the model, then logs every change made to the model.
+   *
+   * @param flushIntervalMillis see TransactionLog.open
+   * @param batchSize see TransactionLog.open
+   * @param compactionThreshold the number of records in the current log segment that triggers a compaction
+   */
+  public static TransactionDatabase open(Path directory, ExpenseTrackerModel model, long flushIntervalMillis,
+      int batchSize, long compactionThreshold) throws IOException {
+    if (model == null) {
+      throw new IllegalArgumentException("The model must be non-null.");
+    }
+    if (compactionThreshold <= 0) {
+      throw new IllegalArgumentException("The compaction threshold must be positive.");
+    }
+    Files.createDirectories(directory);
+    Files.deleteIfExists(directory.resolve(SNAPSHOT + ".tmp"));
+    TransactionDatabase database = new TransactionDatabase(directory, model, compactionThreshold);
+
+    long firstGeneration = 0;
+    Path snapshot = directory.resolve(SNAPSHOT);
+    if (Files.exists(snapshot)) {
+      SnapshotFile file = SnapshotFile.read(snapshot);
+      model.addTransactions(file.getTransactions());
+      firstGeneration = file.getLogGeneration();
+    }
+
+    List<Long> generations = database.segmentGenerations();
+    long lastGeneration = firstGeneration;
+    for (long segment : generations) {
+      if (segment < firstGeneration) {
+        // Already folded into the snapshot, left behind by a crash during compaction
+        Files.delete(database.segment(segment));
+      } else if (segment < generations.get(generations.size() - 1)) {
+        TransactionLog.replay(database.segment(segment), model);
+      } else {
+        lastGeneration = segment;
+      }
+    }
+    database.generation = lastGeneration;
+    database.log = TransactionLog.open(database.segment(lastGeneration), model, flushIntervalMillis, batchSize);
+    // Registered after the log, so a change is logged before it can trigger a compaction
+    model.addListener(database);
+    return database;
+  }
+
+  @Override
+  public void transactionsAdded(int firstRow, int lastRow) {
+    recordsLogged(lastRow - firstRow + 1);
+  }
+
+  @Override
+  public void transactionRemoved(int row) {
+    recordsLogged(1);
+  }
+
+  @Override
+  public void transactionsRemoved(int firstRow, int lastRow) {
+    recordsLogged(lastRow - firstRow + 1);
+  }
+
+  @Override
+  public void transactionsCleared() {
+    recordsLogged(1);
+  }
+
+  /**
+   * Waits until every change made so far is on disk.
+   */
+  public void sync() throws IOException {
+    log.sync();
+  }
+
+  /**
+   * Starts logging into a new segment and writes the current transactions as
+   * the new snapshot in the background. Must be called from the thread that
+   * changes the model.
+   */
+  public void compact() throws IOException {
+    awaitCompaction();
+    long next = generation + 1;
+    log.rotate(segment(next));
+    generation = next;
+    segmentRecords = 0;
+    // Only the columns are copied here, the batch is built in the background
+    Supplier<TransactionBatch> transactions = model.copyForSnapshot();
+    compaction = compactor.submit(() -> {
+      SnapshotFile.write(directory.resolve(SNAPSHOT), transactions.get(), next);
+      for (long segment : segmentGenerations()) {
+        if (segment < next) {
+          Files.delete(segment(segment));
+        }
+      }
+      return null;
+    });
+  }
+
+  /**
+   * Waits for a running compaction to finish.
+   */
+  public void awaitCompaction() throws IOException {
+    if (compaction == null) {
+      return;
+    }
+    try {
+      compaction.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while waiting for the compaction", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw new IOException("The compaction failed", e.getCause());
+    } finally {
+      compaction = null;
+    }
+  }
+
+  /**
+   * Stops logging, waits for a running compaction and closes the current segment.
+   */
+  @Override
+  public void close() throws IOException {
+    model.removeListener(this);
+    try {
+      awaitCompaction();
+    } finally {
+      compactor.shutdown();
+      log.close();
+    }
+  }
+
+  private void recordsLogged(long records) {
+    segmentRecords += records;
+    if (segmentRecords >= compactionThreshold) {
+      try {
+        compact();
+      } catch (IOException e) {
+        throw new UncheckedIOException("The transaction log could not be compacted", e);
+      }
+    }
+  }
+
+  private Path segment(long generation) {
+    return directory.resolve(SEGMENT_PREFIX + generation + SEGMENT_SUFFIX);
+  }
+
+  private List<Long> segmentGenerations() throws IOException {
+    List<Long> generations = new ArrayList<>();
+    try (Stream<Path> files = Files.list(directory)) {
+      for (Path file : (Iterable<Path>) files::iterator) {
+        String name = file.getFileName().toString();
+        if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)) {
+          try {
+            generations.add(Long.parseLong(
+                name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())));
+          } catch (NumberFormatException e) {
+            // Not one of our segments
+          }
+        }
+      }
+    }
+    Collections.sort(generations);
+    return generations;
+  }
+
+}
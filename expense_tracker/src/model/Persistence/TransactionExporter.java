@@ -0,0 +1,268 @@
+package model.Persistence;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+
+import controller.InputValidation;
+import model.CategoryRegistry;
+import model.ExpenseTrackerModel;
+import model.Transaction;
+import model.TransactionBatch;
+import model.TransactionStore;
+import model.Filter.TransactionFilter;
+import model.Filter.TransactionRowFilter;
+
+/**
+ * Writes the transactions of the model to a file as CSV or in a compact
+ * binary format, optionally only those matching a filter.
+ *
+ * The export may run on another thread than the changes of the model, so it
+ * takes the read-only copy of getTransactions() and the rows matching the
+ * filter in one read() of the model: both are of the same version, however
+ * the model changes while the file is written. The rows are read from the
+ * columns of the copy and encoded into one reused buffer, without a
+ * Transaction object per row.
+ *
+ * The CSV has the columns amount,category,date with the date formatted like
+ * in the table, so it can be read back with the CsvImporter. The binary
+ * format is
+ *   header   magic (int), version (int), categories (int)
+ *   names    length (short) and UTF-8 name of every category code
+ *   records  amount (double), creation time (long), category code (short)
+ * in little endian byte order, up to the end of the file.
+ */
+public class TransactionExporter {
+
+  private static final int MAGIC = 0x45545831;
+  private static final int VERSION = 1;
+  private static final int RECORD_SIZE = 18;
+  private static final int BUFFER_SIZE = 64 * 1024;
+  private static final int READ_BATCH_SIZE = 64 * 1024;
+
+  private static final byte[] CSV_HEADER = "amount,category,date\n".getBytes(StandardCharsets.US_ASCII);
+
+  private TransactionExporter() {
+  }
+
+  /**
+   * @param filter the transactions to write, or null for all of them
+   * @return the number of transactions written
+   */
+  public static long writeCsv(ExpenseTrackerModel model, TransactionFilter filter, Path file) throws IOException {
+    try (FileChannel channel = openForWriting(file)) {
+      return writeCsv(model, filter, channel);
+    }
+  }
+
+  public static long writeCsv(ExpenseTrackerModel model, TransactionFilter filter, WritableByteChannel channel)
+      throws IOException {
+    Rows rows = rows(model, filter);
+    TransactionStore transactions = rows.transactions;
+    byte[][] categories = categoryNames(model);
+    ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    buffer.put(CSV_HEADER);
+    long written = 0;
+    // The table shows minutes, so consecutive rows mostly share the formatted date
+    long lastMinute = Long.MIN_VALUE;
+    byte[] date = null;
+    for (int row = rows.next(0); row >= 0; row = rows.next(row + 1)) {
+      byte[] amount = Double.toString(transactions.getAmount(row)).getBytes(StandardCharsets.US_ASCII);
+      long createdAt = transactions.getCreatedAt(row);
+      if (Math.floorDiv(createdAt, 60000) != lastMinute) {
+        lastMinute = Math.floorDiv(createdAt, 60000);
+        date = Transaction.formatTimestamp(createdAt).getBytes(StandardCharsets.US_ASCII);
+      }
+      byte[] category = categories[transactions.getCategoryCode(row)];
+      ensureRemaining(channel, buffer, amount.length + category.length + date.length + 3);
+      buffer.put(amount).put((byte) ',').put(category).put((byte) ',').put(date).put((byte) '\n');
+      written++;
+    }
+    drain(channel, buffer);
+    return written;
+  }
+
+  /**
+   * @param filter the transactions to write, or null for all of them
+   * @return the number of transactions written
+   */
+  public static long writeBinary(ExpenseTrackerModel model, TransactionFilter filter, Path file) throws IOException {
+    try (FileChannel channel = openForWriting(file)) {
+      return writeBinary(model, filter, channel);
+    }
+  }
+
+  public static long writeBinary(ExpenseTrackerModel model, TransactionFilter filter, WritableByteChannel channel)
+      throws IOException {
+    Rows rows = rows(model, filter);
+    TransactionStore transactions = rows.transactions;
+    byte[][] categories = categoryNames(model);
+    ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    buffer.putInt(MAGIC).putInt(VERSION).putInt(categories.length);
+    for (byte[] name : categories) {
+      ensureRemaining(channel, buffer, 2 + name.length);
+      buffer.putShort((short) name.length).put(name);
+    }
+    long written = 0;
+    for (int row = rows.next(0); row >= 0; row = rows.next(row + 1)) {
+      ensureRemaining(channel, buffer, RECORD_SIZE);
+      buffer.putDouble(transactions.getAmount(row)).putLong(transactions.getCreatedAt(row))
+          .putShort((short) transactions.getCategoryCode(row));
+      written++;
+    }
+    drain(channel, buffer);
+    return written;
+  }
+
+  /**
+   * Adds the transactions of a binary export to the model, a batch at a time.
+   *
+   * @return the number of transactions read
+   */
+  public static long readBinary(Path file, ExpenseTrackerModel model) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      return readBinary(channel, model);
+    }
+  }
+
+  public static long readBinary(ReadableByteChannel channel, ExpenseTrackerModel model) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    buffer.flip();
+    require(channel, buffer, 12);
+    if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+      throw new IOException("Not a transaction export");
+    }
+    int categoryCount = buffer.getInt();
+    // Category codes are shorts
+    if (categoryCount < 0 || categoryCount > Short.MAX_VALUE + 1) {
+      throw new IOException("Corrupt transaction export");
+    }
+    String[] categories = new String[categoryCount];
+    for (int code = 0; code < categories.length; code++) {
+      require(channel, buffer, 2);
+      // Written as a short, names of up to 65535 bytes read back
+      byte[] name = new byte[Short.toUnsignedInt(buffer.getShort())];
+      require(channel, buffer, name.length);
+      buffer.get(name);
+      categories[code] = new String(name, StandardCharsets.UTF_8);
+      // Registered like adding the batches would, but failing as a corrupt file
+      try {
+        CategoryRegistry.getDefault().register(categories[code]);
+      } catch (IllegalArgumentException | IllegalStateException e) {
+        throw new IOException("Invalid category in transaction export: " + categories[code], e);
+      }
+    }
+
+    long read = 0;
+    double[] amounts = new double[READ_BATCH_SIZE];
+    long[] createdAt = new long[READ_BATCH_SIZE];
+    short[] codes = new short[READ_BATCH_SIZE];
+    int size = 0;
+    while (true) {
+      if (buffer.remaining() < RECORD_SIZE) {
+        buffer.compact();
+        int bytes = channel.read(buffer);
+        buffer.flip();
+        if (bytes < 0) {
+          if (buffer.hasRemaining()) {
+            throw new IOException("Truncated transaction export");
+          }
+          break;
+        }
+        continue;
+      }
+      amounts[size] = buffer.getDouble();
+      createdAt[size] = buffer.getLong();
+      codes[size] = buffer.getShort();
+      if (codes[size] < 0 || codes[size] >= categories.length) {
+        throw new IOException("Unknown category code in transaction export: " + codes[size]);
+      }
+      // The batches are wrapped without validation, so the amounts are checked like the CSV import does
+      if (!InputValidation.isValidAmount(amounts[size])) {
+        throw new IOException("Invalid amount in transaction export: " + amounts[size]);
+      }
+      if (++size == READ_BATCH_SIZE) {
+        model.addTransactions(TransactionBatch.wrap(amounts.clone(), createdAt.clone(), codes.clone(),
+            categories, size, null));
+        read += size;
+        size = 0;
+      }
+    }
+    model.addTransactions(TransactionBatch.wrap(amounts, createdAt, codes, categories, size, null));
+    return read + size;
+  }
+
+  private static FileChannel openForWriting(Path file) throws IOException {
+    return FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+        StandardOpenOption.WRITE);
+  }
+
+  private static Rows rows(ExpenseTrackerModel model, TransactionFilter filter) {
+    TransactionRowFilter rowFilter = filter == null ? null : TransactionRowFilter.of(filter);
+    return model.read(() -> new Rows((TransactionStore) model.getTransactions(),
+        rowFilter == null ? null : rowFilter.filterRows(model)));
+  }
+
+  // A read-only copy of the transactions and the rows of it to write, null for all of them
+  private static final class Rows {
+    final TransactionStore transactions;
+    final BitSet matches;
+
+    Rows(TransactionStore transactions, BitSet matches) {
+      this.transactions = transactions;
+      this.matches = matches;
+    }
+
+    // The first row to write from the given one on, or -1 if there is none
+    int next(int row) {
+      if (matches != null) {
+        return matches.nextSetBit(row);
+      }
+      return row < transactions.size() ? row : -1;
+    }
+  }
+
+  private static byte[][] categoryNames(ExpenseTrackerModel model) {
+    byte[][] names = new byte[model.getCategoryCodeCount()][];
+    for (int code = 0; code < names.length; code++) {
+      names[code] = model.getCategoryForCode(code).getBytes(StandardCharsets.UTF_8);
+    }
+    return names;
+  }
+
+  private static void ensureRemaining(WritableByteChannel channel, ByteBuffer buffer, int bytes) throws IOException {
+    if (buffer.remaining() < bytes) {
+      drain(channel, buffer);
+    }
+  }
+
+  private static void drain(WritableByteChannel channel, ByteBuffer buffer) throws IOException {
+    buffer.flip();
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    buffer.clear();
+  }
+
+  // Makes at least the given number of bytes readable, the buffer is in read mode
+  private static void require(ReadableByteChannel channel, ByteBuffer buffer, int bytes) throws IOException {
+    if (bytes > buffer.capacity()) {
+      throw new IOException("Corrupt transaction export");
+    }
+    buffer.compact();
+    while (buffer.position() < bytes) {
+      if (channel.read(buffer) < 0) {
+        throw new IOException("Truncated transaction export");
+      }
+    }
+    buffer.flip();
+  }
+
+}
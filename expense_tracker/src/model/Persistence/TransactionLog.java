@@ -0,0 +1,423 @@
+package model.Persistence;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import model.CategoryRegistry;
+import model.ExpenseTrackerModel;
+import model.ExpenseTrackerModelListener;
+import model.Transaction;
+
+/**
+ * Append-only write-ahead log of the changes made to an ExpenseTrackerModel.
+ *
+ * The log listens to the model and encodes every change as a
+ * compact binary record into an in-memory buffer, which only takes the time
+ * of a few buffer writes on the calling thread. A background thread writes
+ * the buffered records as one frame and forces them to disk once the flush
+ * interval has passed or the batch size is reached (group commit). A crash
+ * therefore loses at most the records of the last flush interval, and
+ * sync() waits until everything logged so far is on disk.
+ *
+ * Every frame is written as [payload length][CRC32 of payload][payload].
+ * On open, the frames of an existing log are replayed into the model and a
+ * torn or corrupt tail left by a crash is cut off.
+ *
+ * Records inside a frame:
+ *   CATEGORY  code (short), length (short), UTF-8 name, defines a category code
+ *   ADD       amount (double), creation time (long), category code (short)
+ *   REMOVE    row (int)
+ *   CLEAR
+ *   INSERT    row (int), then the fields of an ADD, e.g. an undone removal
+ */
+public class TransactionLog implements ExpenseTrackerModelListener, Closeable {
+
+  public static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 10;
+  public static final int DEFAULT_BATCH_SIZE = 1024;
+
+  private static final byte CATEGORY = 1;
+  private static final byte ADD = 2;
+  private static final byte REMOVE = 3;
+  private static final byte CLEAR = 4;
+  private static final byte INSERT = 5;
+
+  private static final int FRAME_HEADER_SIZE = 8;
+  private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+
+  private FileChannel channel;
+  private final ExpenseTrackerModel model;
+  private final long flushIntervalMillis;
+  private final int batchSize;
+  private final Thread flusher;
+
+  // Everything below is guarded by lock
+  private final Object lock = new Object();
+  private final Map<String, Short> categoryCodes = new HashMap<>();
+  private ByteBuffer buffer = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+  private ByteBuffer spare = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+  private int bufferedRecords;
+  private long appendedRecords;
+  private long durableRecords;
+  private int syncWaiters;
+  private boolean closed;
+  private IOException failure;
+
+  private TransactionLog(FileChannel channel, ExpenseTrackerModel model, long flushIntervalMillis, int batchSize) {
+    this.channel = channel;
+    this.model = model;
+    this.flushIntervalMillis = flushIntervalMillis;
+    this.batchSize = batchSize;
+    this.flusher = new Thread(this::runFlusher, "TransactionLog flusher");
+    this.flusher.setDaemon(true);
+  }
+
+  public static TransactionLog open(Path file, ExpenseTrackerModel model) throws IOException {
+    return open(file, model, DEFAULT_FLUSH_INTERVAL_MILLIS, DEFAULT_BATCH_SIZE);
+  }
+
+  /**
+   * Replays the log file into the model, then logs every change made to the model.
+   *
+   * @param flushIntervalMillis the longest time a record stays in memory before it is forced to disk
+   * @param batchSize the number of buffered records that triggers a flush before the interval has passed
+   */
+  public static TransactionLog open(Path file, ExpenseTrackerModel model, long flushIntervalMillis, int batchSize)
+      throws IOException {
+    if (model == null) {
+      throw new IllegalArgumentException("The model must be non-null.");
+    }
+    if (flushIntervalMillis <= 0 || batchSize <= 0) {
+      throw new IllegalArgumentException("The flush interval and batch size must be positive.");
+    }
+    FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+        StandardOpenOption.WRITE);
+    TransactionLog log = new TransactionLog(channel, model, flushIntervalMillis, batchSize);
+    try {
+      long end = log.replay();
+      // Cut off a frame that was only partly written when the application stopped
+      channel.truncate(end);
+      channel.position(end);
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+    model.addListener(log);
+    log.flusher.start();
+    return log;
+  }
+
+  /**
+   * Replays a log file into the model without logging any further changes.
+   */
+  public static void replay(Path file, ExpenseTrackerModel model) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      new TransactionLog(channel, model, DEFAULT_FLUSH_INTERVAL_MILLIS, DEFAULT_BATCH_SIZE).replay();
+    }
+  }
+
+  /**
+   * Continues logging into a new file, after everything logged so far has
+   * been forced to the current one. Like the changes to the model, this
+   * must happen on the thread that changes the model.
+   */
+  public void rotate(Path file) throws IOException {
+    sync();
+    FileChannel next = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+        StandardOpenOption.READ, StandardOpenOption.WRITE);
+    FileChannel previous;
+    synchronized (lock) {
+      previous = channel;
+      channel = next;
+      // The new file defines its own category codes
+      categoryCodes.clear();
+    }
+    previous.close();
+  }
+
+  @Override
+  public void transactionsAdded(int firstRow, int lastRow) {
+    synchronized (lock) {
+      checkOpen();
+      // Rows that are not at the end were inserted
+      boolean inserted = lastRow < model.getTransactionCount() - 1;
+      for (int row = firstRow; row <= lastRow; row++) {
+        short code = categoryCode(model.getCategory(row));
+        ensureCapacity(23);
+        if (inserted) {
+          buffer.put(INSERT).putInt(row);
+        } else {
+          buffer.put(ADD);
+        }
+        buffer.putDouble(model.getAmount(row)).putLong(model.getCreatedAt(row)).putShort(code);
+        recordAppended();
+      }
+    }
+  }
+
+  @Override
+  public void transactionRemoved(int row) {
+    synchronized (lock) {
+      checkOpen();
+      ensureCapacity(5);
+      buffer.put(REMOVE).putInt(row);
+      recordAppended();
+    }
+  }
+
+  @Override
+  public void transactionsCleared() {
+    synchronized (lock) {
+      checkOpen();
+      ensureCapacity(1);
+      buffer.put(CLEAR);
+      recordAppended();
+    }
+  }
+
+  /**
+   * Waits until every record logged so far has been forced to disk.
+   */
+  public void sync() throws IOException {
+    synchronized (lock) {
+      long target = appendedRecords;
+      syncWaiters++;
+      lock.notifyAll();
+      try {
+        while (durableRecords < target && failure == null && flusher.isAlive()) {
+          lock.wait();
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException("Interrupted while waiting for the log to be written", e);
+      } finally {
+        syncWaiters--;
+      }
+      if (failure != null) {
+        throw failure;
+      }
+    }
+  }
+
+  /**
+   * Stops logging, writes the remaining records and closes the file.
+   */
+  @Override
+  public void close() throws IOException {
+    model.removeListener(this);
+    synchronized (lock) {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      lock.notifyAll();
+    }
+    try {
+      flusher.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    synchronized (lock) {
+      channel.close();
+      if (failure != null) {
+        throw failure;
+      }
+    }
+  }
+
+  private void runFlusher() {
+    while (true) {
+      ByteBuffer batch;
+      long records;
+      FileChannel target;
+      synchronized (lock) {
+        if (!closed && syncWaiters == 0 && bufferedRecords < batchSize) {
+          try {
+            lock.wait(flushIntervalMillis);
+          } catch (InterruptedException e) {
+            closed = true;
+          }
+        }
+        if (buffer.position() == 0) {
+          if (closed) {
+            return;
+          }
+          continue;
+        }
+        batch = buffer;
+        buffer = spare;
+        records = appendedRecords;
+        bufferedRecords = 0;
+        target = channel;
+      }
+
+      try {
+        batch.flip();
+        writeFrame(target, batch);
+        target.force(false);
+      } catch (IOException e) {
+        synchronized (lock) {
+          failure = e;
+          closed = true;
+          lock.notifyAll();
+        }
+        return;
+      }
+
+      synchronized (lock) {
+        batch.clear();
+        spare = batch;
+        durableRecords = records;
+        lock.notifyAll();
+      }
+    }
+  }
+
+  private static void writeFrame(FileChannel channel, ByteBuffer payload) throws IOException {
+    CRC32 crc = new CRC32();
+    crc.update(payload.duplicate());
+    ByteBuffer header = ByteBuffer.allocate(FRAME_HEADER_SIZE);
+    header.putInt(payload.remaining()).putInt((int) crc.getValue()).flip();
+    ByteBuffer[] frame = {header, payload};
+    while (payload.hasRemaining()) {
+      channel.write(frame);
+    }
+  }
+
+  private long replay() throws IOException {
+    long size = channel.size();
+    long position = 0;
+    List<String> categories = new ArrayList<>();
+    ByteBuffer header = ByteBuffer.allocate(FRAME_HEADER_SIZE);
+    while (position + FRAME_HEADER_SIZE <= size) {
+      header.clear();
+      readFully(header, position);
+      header.flip();
+      int length = header.getInt();
+      int checksum = header.getInt();
+      if (length <= 0 || position + FRAME_HEADER_SIZE + length > size) {
+        break;
+      }
+      ByteBuffer payload = ByteBuffer.allocate(length);
+      readFully(payload, position + FRAME_HEADER_SIZE);
+      payload.flip();
+      CRC32 crc = new CRC32();
+      crc.update(payload.duplicate());
+      if ((int) crc.getValue() != checksum) {
+        break;
+      }
+      apply(payload, categories);
+      position += FRAME_HEADER_SIZE + length;
+    }
+    for (int code = 0; code < categories.size(); code++) {
+      categoryCodes.put(categories.get(code), (short) code);
+    }
+    return position;
+  }
+
+  private void apply(ByteBuffer payload, List<String> categories) {
+    while (payload.hasRemaining()) {
+      byte type = payload.get();
+      switch (type) {
+        case CATEGORY:
+          short code = payload.getShort();
+          // Written as a short, names of up to 65535 bytes read back
+          byte[] name = new byte[Short.toUnsignedInt(payload.getShort())];
+          payload.get(name);
+          while (categories.size() <= code) {
+            categories.add(null);
+          }
+          categories.set(code, new String(name, StandardCharsets.UTF_8));
+          // The category may have been defined by the user in an earlier session
+          CategoryRegistry.getDefault().register(categories.get(code));
+          break;
+        case ADD:
+          double amount = payload.getDouble();
+          long createdAt = payload.getLong();
+          String category = categories.get(payload.getShort());
+          model.addTransaction(new Transaction(amount, category, createdAt));
+          break;
+        case REMOVE:
+          model.removeTransactionAt(payload.getInt());
+          break;
+        case INSERT:
+          int row = payload.getInt();
+          amount = payload.getDouble();
+          createdAt = payload.getLong();
+          category = categories.get(payload.getShort());
+          model.insertTransactionAt(row, new Transaction(amount, category, createdAt));
+          break;
+        case CLEAR:
+          model.clearTransactions();
+          break;
+        default:
+          throw new IllegalStateException("Unknown log record type: " + type);
+      }
+    }
+  }
+
+  private void readFully(ByteBuffer target, long position) throws IOException {
+    while (target.hasRemaining()) {
+      int read = channel.read(target, position);
+      if (read < 0) {
+        throw new IOException("Unexpected end of the transaction log");
+      }
+      position += read;
+    }
+  }
+
+  // The first use of a category in this log writes a record defining its code
+  private short categoryCode(String category) {
+    Short code = categoryCodes.get(category);
+    if (code == null) {
+      if (categoryCodes.size() == Short.MAX_VALUE) {
+        throw new IllegalStateException("Too many distinct categories.");
+      }
+      code = (short) categoryCodes.size();
+      byte[] name = category.getBytes(StandardCharsets.UTF_8);
+      if (name.length > 0xFFFF) {
+        throw new IllegalArgumentException("A category name is too long for the transaction log.");
+      }
+      ensureCapacity(5 + name.length);
+      buffer.put(CATEGORY).putShort(code).putShort((short) name.length).put(name);
+      categoryCodes.put(category, code);
+    }
+    return code;
+  }
+
+  private void ensureCapacity(int bytes) {
+    if (buffer.remaining() < bytes) {
+      ByteBuffer larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes));
+      buffer.flip();
+      larger.put(buffer);
+      buffer = larger;
+    }
+  }
+
+  private void recordAppended() {
+    appendedRecords++;
+    if (++bufferedRecords == batchSize) {
+      lock.notifyAll();
+    }
+  }
+
+  private void checkOpen() {
+    if (failure != null) {
+      throw new UncheckedIOException("The transaction log could not be written", failure);
+    }
+    if (closed) {
+      throw new IllegalStateException("The transaction log is closed.");
+    }
+  }
+
+}
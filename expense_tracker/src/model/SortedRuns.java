@@ -0,0 +1,407 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * Sorted entries of long keys and the slots of the store holding them, shared
+ * by the AmountIndex and the TimeIndex, answering range queries by binary
+ * search. The entries of removed slots stay until the store is compacted.
+ *
+ * The entries are kept in a few sorted runs of decreasing size. New entries
+ * go into a small sorted buffer, a full buffer becomes the smallest run, and
+ * a run is merged into the one before it as soon as it is as large. Every
+ * entry is therefore moved a logarithmic number of times, not once per
+ * buffer. A merge fills the arrays of the larger run from the back, they
+ * grow geometrically instead of being allocated for every merge. Queries
+ * search every run and the buffer.
+ */
+class SortedRuns {
+
+  private static final int PENDING_CAPACITY = 1024;
+
+  // Sorted runs, each at most as large as the one before it
+  private long[][] runKeys = new long[4][];
+  private int[][] runSlots = new int[4][];
+  private int[] runSizes = new int[4];
+  private int runCount;
+
+  private final long[] pendingKeys = new long[PENDING_CAPACITY];
+  private final int[] pendingSlots = new int[PENDING_CAPACITY];
+  private int pendingSize;
+
+  void add(long key, int slot) {
+    if (pendingSize == PENDING_CAPACITY) {
+      flush();
+    }
+    int position = upperBound(pendingKeys, pendingSize, key);
+    System.arraycopy(pendingKeys, position, pendingKeys, position + 1, pendingSize - position);
+    System.arraycopy(pendingSlots, position, pendingSlots, position + 1, pendingSize - position);
+    pendingKeys[position] = key;
+    pendingSlots[position] = slot;
+    pendingSize++;
+  }
+
+  /**
+   * Appends the entry to the largest run if no key of that run is above it,
+   * which costs no search at all.
+   *
+   * @return false if the entry has to be added with add() instead
+   */
+  boolean append(long key, int slot) {
+    if (runCount == 0) {
+      push(new long[]{key}, new int[]{slot}, 1);
+      return true;
+    }
+    int size = runSizes[0];
+    if (key < runKeys[0][size - 1]) {
+      return false;
+    }
+    if (size == runKeys[0].length) {
+      int capacity = size + (size >> 1) + 1;
+      runKeys[0] = Arrays.copyOf(runKeys[0], capacity);
+      runSlots[0] = Arrays.copyOf(runSlots[0], capacity);
+    }
+    runKeys[0][size] = key;
+    runSlots[0][size] = slot;
+    runSizes[0]++;
+    return true;
+  }
+
+  /**
+   * Adds entries in bulk, they become a sorted run of their own. The arrays
+   * are kept by the runs.
+   *
+   * @param sorted whether the keys are already in ascending order
+   */
+  void addAll(long[] keys, int[] slots, int count, boolean sorted) {
+    if (!sorted) {
+      sort(keys, slots, 0, count - 1);
+    }
+    push(keys, slots, count);
+  }
+
+  /**
+   * @return a copy of the entries, which changes independently of these
+   */
+  SortedRuns copy() {
+    SortedRuns copy = new SortedRuns();
+    copy.runKeys = new long[runKeys.length][];
+    copy.runSlots = new int[runSlots.length][];
+    copy.runSizes = Arrays.copyOf(runSizes, runSizes.length);
+    for (int run = 0; run < runCount; run++) {
+      copy.runKeys[run] = Arrays.copyOf(runKeys[run], runSizes[run]);
+      copy.runSlots[run] = Arrays.copyOf(runSlots[run], runSizes[run]);
+    }
+    copy.runCount = runCount;
+    System.arraycopy(pendingKeys, 0, copy.pendingKeys, 0, pendingSize);
+    System.arraycopy(pendingSlots, 0, copy.pendingSlots, 0, pendingSize);
+    copy.pendingSize = pendingSize;
+    return copy;
+  }
+
+  /**
+   * Merges every run into one in place, so it is meant for a copy() that no
+   * query reads.
+   *
+   * @return every slot, ordered by key
+   */
+  int[] orderedSlots() {
+    flush();
+    while (runCount > 1) {
+      mergeLast();
+    }
+    return runCount == 0 ? new int[0] : Arrays.copyOf(runSlots[0], runSizes[0]);
+  }
+
+  /**
+   * Removes the entry, e.g. of a slot whose key changes. The run holding it
+   * is binary searched for the key and then scanned over the entries with
+   * an equal key; the entries after it in the run shift down by one.
+   */
+  void delete(long key, int slot) {
+    for (int run = 0; run < runCount; run++) {
+      int size = runSizes[run];
+      int position = find(runKeys[run], runSlots[run], size, key, slot);
+      if (position >= 0) {
+        System.arraycopy(runKeys[run], position + 1, runKeys[run], position, size - position - 1);
+        System.arraycopy(runSlots[run], position + 1, runSlots[run], position, size - position - 1);
+        if (--runSizes[run] == 0) {
+          dropEmptyRuns();
+        }
+        return;
+      }
+    }
+    int position = find(pendingKeys, pendingSlots, pendingSize, key, slot);
+    if (position >= 0) {
+      System.arraycopy(pendingKeys, position + 1, pendingKeys, position, pendingSize - position - 1);
+      System.arraycopy(pendingSlots, position + 1, pendingSlots, position, pendingSize - position - 1);
+      pendingSize--;
+    }
+  }
+
+  /**
+   * Removes the entries of every slot from firstSlot on in one pass.
+   */
+  void truncate(int firstSlot) {
+    for (int run = 0; run < runCount; run++) {
+      runSizes[run] = retainBelow(runKeys[run], runSlots[run], runSizes[run], firstSlot);
+    }
+    dropEmptyRuns();
+    pendingSize = retainBelow(pendingKeys, pendingSlots, pendingSize, firstSlot);
+  }
+
+  // The store was compacted, the entries of removed slots are dropped
+  void remap(int[] moved) {
+    for (int run = 0; run < runCount; run++) {
+      runSizes[run] = remap(runKeys[run], runSlots[run], runSizes[run], moved);
+    }
+    pendingSize = remap(pendingKeys, pendingSlots, pendingSize, moved);
+    dropEmptyRuns();
+  }
+
+  void clear() {
+    Arrays.fill(runKeys, null);
+    Arrays.fill(runSlots, null);
+    runCount = 0;
+    pendingSize = 0;
+  }
+
+  /**
+   * @return the number of entries with from <= key <= to
+   */
+  int count(long from, long to) {
+    if (from > to) {
+      return 0;
+    }
+    int count = upperBound(pendingKeys, pendingSize, to) - lowerBound(pendingKeys, pendingSize, from);
+    for (int run = 0; run < runCount; run++) {
+      count += upperBound(runKeys[run], runSizes[run], to) - lowerBound(runKeys[run], runSizes[run], from);
+    }
+    return count;
+  }
+
+  /**
+   * @return the slots with from <= key <= to, in key order within each run
+   */
+  int[] slots(long from, long to) {
+    if (from > to) {
+      return new int[0];
+    }
+    int[] result = new int[count(from, to)];
+    int length = 0;
+    for (int run = 0; run < runCount; run++) {
+      int start = lowerBound(runKeys[run], runSizes[run], from);
+      int end = upperBound(runKeys[run], runSizes[run], to);
+      System.arraycopy(runSlots[run], start, result, length, end - start);
+      length += end - start;
+    }
+    int pendingStart = lowerBound(pendingKeys, pendingSize, from);
+    int pendingEnd = upperBound(pendingKeys, pendingSize, to);
+    System.arraycopy(pendingSlots, pendingStart, result, length, pendingEnd - pendingStart);
+    return result;
+  }
+
+  private void dropEmptyRuns() {
+    int kept = 0;
+    for (int run = 0; run < runCount; run++) {
+      if (runSizes[run] > 0) {
+        runKeys[kept] = runKeys[run];
+        runSlots[kept] = runSlots[run];
+        runSizes[kept++] = runSizes[run];
+      }
+    }
+    for (int run = kept; run < runCount; run++) {
+      runKeys[run] = null;
+      runSlots[run] = null;
+    }
+    runCount = kept;
+  }
+
+  // Turns the buffer into the smallest run
+  private void flush() {
+    if (pendingSize == 0) {
+      return;
+    }
+    push(Arrays.copyOf(pendingKeys, pendingSize), Arrays.copyOf(pendingSlots, pendingSize), pendingSize);
+    pendingSize = 0;
+  }
+
+  // Adds a sorted run after the others, then merges the runs that are no longer smaller than the one before
+  private void push(long[] keys, int[] slots, int count) {
+    if (count == 0) {
+      return;
+    }
+    if (runCount == runSizes.length) {
+      runKeys = Arrays.copyOf(runKeys, runCount * 2);
+      runSlots = Arrays.copyOf(runSlots, runCount * 2);
+      runSizes = Arrays.copyOf(runSizes, runCount * 2);
+    }
+    runKeys[runCount] = keys;
+    runSlots[runCount] = slots;
+    runSizes[runCount++] = count;
+    while (runCount > 1 && runSizes[runCount - 2] <= runSizes[runCount - 1]) {
+      mergeLast();
+    }
+  }
+
+  // Merges the last run into the arrays of the one before it, starting with the largest keys
+  private void mergeLast() {
+    int target = runCount - 2;
+    int last = runCount - 1;
+    long[] keys = runKeys[target];
+    int[] slots = runSlots[target];
+    int size = runSizes[target];
+    long[] lastKeys = runKeys[last];
+    int[] lastSlots = runSlots[last];
+    int lastSize = runSizes[last];
+    int length = size + lastSize;
+    if (length > keys.length) {
+      int capacity = Math.max(length, keys.length + (keys.length >> 1));
+      keys = runKeys[target] = Arrays.copyOf(keys, capacity);
+      slots = runSlots[target] = Arrays.copyOf(slots, capacity);
+    }
+    int i = size - 1;
+    int j = lastSize - 1;
+    int k = length - 1;
+    // Entries of the target run that are below every entry of the last run stay where they are
+    while (j >= 0) {
+      if (i >= 0 && keys[i] > lastKeys[j]) {
+        keys[k] = keys[i];
+        slots[k--] = slots[i--];
+      } else {
+        keys[k] = lastKeys[j];
+        slots[k--] = lastSlots[j--];
+      }
+    }
+    runSizes[target] = length;
+    runKeys[last] = null;
+    runSlots[last] = null;
+    runCount--;
+  }
+
+  // Quicksort of keys[low..high] that moves the values along with their keys
+  private static void sort(long[] keys, int[] values, int low, int high) {
+    while (high - low > 16) {
+      int mid = (low + high) >>> 1;
+      // Median of three as the pivot
+      if (keys[mid] < keys[low]) {
+        swap(keys, values, mid, low);
+      }
+      if (keys[high] < keys[low]) {
+        swap(keys, values, high, low);
+      }
+      if (keys[high] < keys[mid]) {
+        swap(keys, values, high, mid);
+      }
+      long pivot = keys[mid];
+      int i = low;
+      int j = high;
+      while (i <= j) {
+        while (keys[i] < pivot) {
+          i++;
+        }
+        while (keys[j] > pivot) {
+          j--;
+        }
+        if (i <= j) {
+          swap(keys, values, i++, j--);
+        }
+      }
+      // Recurse into the smaller part to bound the stack depth
+      if (j - low < high - i) {
+        sort(keys, values, low, j);
+        low = i;
+      } else {
+        sort(keys, values, i, high);
+        high = j;
+      }
+    }
+    // Insertion sort for the small ranges left
+    for (int i = low + 1; i <= high; i++) {
+      long key = keys[i];
+      int value = values[i];
+      int j = i - 1;
+      while (j >= low && keys[j] > key) {
+        keys[j + 1] = keys[j];
+        values[j + 1] = values[j];
+        j--;
+      }
+      keys[j + 1] = key;
+      values[j + 1] = value;
+    }
+  }
+
+  private static void swap(long[] keys, int[] values, int i, int j) {
+    long key = keys[i];
+    keys[i] = keys[j];
+    keys[j] = key;
+    int value = values[i];
+    values[i] = values[j];
+    values[j] = value;
+  }
+
+  private static int find(long[] keys, int[] values, int length, long key, int slot) {
+    for (int i = lowerBound(keys, length, key); i < length && keys[i] == key; i++) {
+      if (values[i] == slot) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  // Replaces the slots by their new ones, keeping the order and dropping removed slots
+  private static int remap(long[] keys, int[] values, int length, int[] moved) {
+    int kept = 0;
+    for (int i = 0; i < length; i++) {
+      int slot = moved[values[i]];
+      if (slot != -1) {
+        keys[kept] = keys[i];
+        values[kept++] = slot;
+      }
+    }
+    return kept;
+  }
+
+  // Keeps the entries with a slot below the limit, in their order
+  private static int retainBelow(long[] keys, int[] values, int length, int limit) {
+    int kept = 0;
+    for (int i = 0; i < length; i++) {
+      if (values[i] < limit) {
+        keys[kept] = keys[i];
+        values[kept++] = values[i];
+      }
+    }
+    return kept;
+  }
+
+  // First position with keys[position] >= key
+  private static int lowerBound(long[] keys, int length, long key) {
+    int low = 0;
+    int high = length;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (keys[mid] < key) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  // First position with keys[position] > key
+  private static int upperBound(long[] keys, int length, long key) {
+    int low = 0;
+    int high = length;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (keys[mid] <= key) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+}
@@ -0,0 +1,83 @@
+package model;
+
+/**
+ * Ordered index from creation time to the slots of the store, answering
+ * range queries by binary search.
+ *
+ * Transactions are usually added in the order they were made, so an entry
+ * that is not older than the newest one is appended to the largest run of
+ * the SortedRuns directly. Older entries, e.g. from an import of past
+ * statements, are added like in the AmountIndex.
+ */
+class TimeIndex {
+
+  private final SortedRuns entries = new SortedRuns();
+
+  void add(long time, int slot) {
+    if (!entries.append(time, slot)) {
+      entries.add(time, slot);
+    }
+  }
+
+  /**
+   * Adds the consecutive slots of a batch in bulk. A batch that is already in
+   * time order is not sorted again.
+   */
+  void addAll(long[] batchTimes, int count, int firstSlot) {
+    long[] keys = new long[count];
+    int[] slots = new int[count];
+    boolean ordered = true;
+    for (int i = 0; i < count; i++) {
+      keys[i] = batchTimes[i];
+      slots[i] = firstSlot + i;
+      if (i > 0 && keys[i] < keys[i - 1]) {
+        ordered = false;
+      }
+    }
+    entries.addAll(keys, slots, count, ordered);
+  }
+
+  /**
+   * Removes the entry of the last slot of the store.
+   */
+  void removeLast(long time, int slot) {
+    entries.delete(time, slot);
+  }
+
+  /**
+   * Removes the entries of every slot from firstSlot on in one pass.
+   */
+  void truncate(int firstSlot) {
+    entries.truncate(firstSlot);
+  }
+
+  void update(long oldTime, long newTime, int slot) {
+    if (oldTime != newTime) {
+      entries.delete(oldTime, slot);
+      add(newTime, slot);
+    }
+  }
+
+  void remap(int[] moved) {
+    entries.remap(moved);
+  }
+
+  void clear() {
+    entries.clear();
+  }
+
+  /**
+   * @return the number of entries with from <= time <= to
+   */
+  int count(long from, long to) {
+    return entries.count(from, to);
+  }
+
+  /**
+   * @return the slots with from <= time <= to, in time order within each run
+   */
+  int[] slots(long from, long to) {
+    return entries.slots(from, to);
+  }
+
+}
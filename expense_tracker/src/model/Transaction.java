@@ -3,31 +3,91 @@ package model;
 import controller.InputValidation;
 
 import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
 import java.util.List;
 
 public class Transaction {
 
+  /**
+   * @deprecated SimpleDateFormat is not thread-safe, use TIMESTAMP_FORMAT,
+   *             formatTimestamp and parseTimestamp instead
+   */
+  @Deprecated
   public static final SimpleDateFormat dateFormatter = new SimpleDateFormat("dd-MM-yyyy HH:mm");
-    
+
+  // Same format as dateFormatter, but immutable and therefore thread-safe
+  public static final DateTimeFormatter TIMESTAMP_FORMAT =
+      DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm").withZone(ZoneId.systemDefault());
+
   //final means that the variable cannot be changed
   private final double amount;
-  private final String category;
-  private final String timestamp;
+  // Code of the category in the default CategoryRegistry
+  private final short categoryCode;
+  private final long createdAt;
+  // Assigned by the model when the transaction is stored, 0 until then
+  private final long id;
+  // Formatted on first use, most transactions handed out by the model are never displayed
+  private String timestamp;
 
   public Transaction(double amount, String category) {
+    this(amount, category, System.currentTimeMillis());
+  }
+
+  /**
+   * Creates a transaction that was made at the given time, in epoch milliseconds.
+   * Used to restore transactions that were stored earlier.
+   */
+  public Transaction(double amount, String category, long createdAt) {
     // Since this is a public constructor, perform input validation
     // to guarantee that the amount and category are both valid
     if (InputValidation.isValidAmount(amount) == false) {
-	throw new IllegalArgumentException("The amount is not valid.");
+      throw new IllegalArgumentException("The amount is not valid.");
     }
-    if (InputValidation.isValidCategory(category) == false) {
-	throw new IllegalArgumentException("The category is not valid.");
+    int code = CategoryRegistry.getDefault().lookup(category);
+    if (code == -1) {
+      throw new IllegalArgumentException("The category is not valid.");
     }
-      
+
+    this.amount = amount;
+    this.categoryCode = (short) code;
+    this.createdAt = createdAt;
+    this.id = 0;
+  }
+
+  private Transaction(double amount, int categoryCode, long createdAt, long id) {
     this.amount = amount;
-    this.category = category;
-    this.timestamp = generateTimestamp();
+    this.categoryCode = (short) categoryCode;
+    this.createdAt = createdAt;
+    this.id = id;
+  }
+
+  // Used by the TransactionStore to hand out a view of a stored row.
+  // The row was validated when it was first added, so no validation here.
+  static Transaction ofStoredRow(double amount, int categoryCode, long createdAt, long id) {
+    return new Transaction(amount, categoryCode, createdAt, id);
+  }
+
+  static Transaction ofStoredRow(double amount, int categoryCode, long createdAt) {
+    return new Transaction(amount, categoryCode, createdAt, 0);
+  }
+
+  /**
+   * @return a transaction with the same values that is not tied to a stored
+   *         row, for matching transactions by their values alone
+   */
+  public Transaction withoutId() {
+    return id == 0 ? this : new Transaction(amount, categoryCode, createdAt, 0);
+  }
+
+  /**
+   * @return the ID the model gave the transaction when it was stored, or 0 if
+   *         it was not read from a model. IDs are not reused while the model exists.
+   */
+  public long getId() {
+    return id;
   }
 
   public double getAmount() {
@@ -39,20 +99,76 @@ public class Transaction {
   //   this.amount = amount;
   // }
 
+  /**
+   * @return the category as it was first registered, categories are matched ignoring case
+   */
   public String getCategory() {
-    return category;
+    return CategoryRegistry.getDefault().getName(categoryCode);
+  }
+
+  /**
+   * @return the code of the category in the default CategoryRegistry
+   */
+  public int getCategoryCode() {
+    return categoryCode;
   }
 
   // public void setCategory(String category) {
-  //   this.category = category; 
+  //   this.category = category;
   // }
-  
+
   public String getTimestamp() {
+    if (timestamp == null) {
+      timestamp = formatTimestamp(createdAt);
+    }
     return timestamp;
   }
-  //private helper method to generate timestamp
-  private String generateTimestamp() {
-     return dateFormatter.format(new Date());
+
+  /**
+   * @return the creation time in epoch milliseconds, for sorting and comparing without parsing
+   */
+  public long getCreatedAt() {
+    return createdAt;
+  }
+
+  public static String formatTimestamp(long createdAt) {
+    return TIMESTAMP_FORMAT.format(Instant.ofEpochMilli(createdAt));
+  }
+
+  /**
+   * @return the epoch milliseconds of a timestamp in the format of getTimestamp()
+   * @throws java.time.format.DateTimeParseException if the timestamp is not in that format
+   */
+  public static long parseTimestamp(String timestamp) {
+    return ZonedDateTime.parse(timestamp, TIMESTAMP_FORMAT).toInstant().toEpochMilli();
+  }
+
+  // Two transactions are equal when they hold the same values and ID. The model hands
+  // out views of its rows, so the same row may be represented by different objects,
+  // while two rows with the same values stay distinct. Use withoutId() to match by
+  // values alone.
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof Transaction)) {
+      return false;
+    }
+    Transaction other = (Transaction) o;
+    return Double.compare(amount, other.amount) == 0
+        && createdAt == other.createdAt
+        && categoryCode == other.categoryCode
+        && id == other.id;
+  }
+
+  @Override
+  public int hashCode() {
+    int result = Double.hashCode(amount);
+    result = 31 * result + categoryCode;
+    result = 31 * result + Long.hashCode(createdAt);
+    result = 31 * result + Long.hashCode(id);
+    return result;
   }
 
 }
@@ -0,0 +1,92 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * Running totals and counts of the transactions, overall and per category code.
+ *
+ * The totals use compensated (Neumaier) summation, so adding and removing
+ * millions of amounts does not let the rounding error of the double sums grow
+ * with the number of operations. A total is reset to exactly zero whenever
+ * its count drops to zero.
+ */
+class TransactionAggregates {
+
+  private double total;
+  private double totalCompensation;
+  private int count;
+
+  private double[] categoryTotals = new double[8];
+  private double[] categoryCompensations = new double[8];
+  private int[] categoryCounts = new int[8];
+
+  void add(int code, double amount) {
+    if (code >= categoryCounts.length) {
+      int capacity = Math.max(code + 1, categoryCounts.length * 2);
+      categoryTotals = Arrays.copyOf(categoryTotals, capacity);
+      categoryCompensations = Arrays.copyOf(categoryCompensations, capacity);
+      categoryCounts = Arrays.copyOf(categoryCounts, capacity);
+    }
+    update(code, amount, 1);
+  }
+
+  void remove(int code, double amount) {
+    update(code, -amount, -1);
+  }
+
+  void clear() {
+    total = 0;
+    totalCompensation = 0;
+    count = 0;
+    Arrays.fill(categoryTotals, 0);
+    Arrays.fill(categoryCompensations, 0);
+    Arrays.fill(categoryCounts, 0);
+  }
+
+  double getTotal() {
+    return total + totalCompensation;
+  }
+
+  int getCount() {
+    return count;
+  }
+
+  double getTotal(int code) {
+    return code < categoryTotals.length ? categoryTotals[code] + categoryCompensations[code] : 0;
+  }
+
+  int getCount(int code) {
+    return code < categoryCounts.length ? categoryCounts[code] : 0;
+  }
+
+  private void update(int code, double amount, int delta) {
+    count += delta;
+    if (count == 0) {
+      total = 0;
+      totalCompensation = 0;
+    } else {
+      double sum = total + amount;
+      totalCompensation += compensation(total, amount, sum);
+      total = sum;
+    }
+
+    categoryCounts[code] += delta;
+    if (categoryCounts[code] == 0) {
+      categoryTotals[code] = 0;
+      categoryCompensations[code] = 0;
+    } else {
+      double sum = categoryTotals[code] + amount;
+      categoryCompensations[code] += compensation(categoryTotals[code], amount, sum);
+      categoryTotals[code] = sum;
+    }
+  }
+
+  // The low-order bits lost when computing sum = a + b
+  private static double compensation(double a, double b, double sum) {
+    if (Math.abs(a) >= Math.abs(b)) {
+      return (a - sum) + b;
+    }
+    return (b - sum) + a;
+  }
+
+}
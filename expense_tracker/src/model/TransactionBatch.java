@@ -0,0 +1,154 @@
+package model;
+
+import java.util.Arrays;
+
+import controller.InputValidation;
+
+/**
+ * Many transactions stored column by column, used to move them into or out
+ * of the model at once instead of one Transaction object at a time.
+ *
+ * Categories are stored as short codes: CategoryRegistry codes for batches
+ * filled with add(), codes into the names read back from storage for wrapped
+ * batches. A batch may also carry its positions ordered by amount, which
+ * saves the model from sorting them again when the batch is added to the
+ * amount index.
+ */
+public class TransactionBatch {
+
+  private double[] amounts;
+  private long[] createdAt;
+  private short[] categoryCodes;
+  private int size;
+
+  // Null while the codes are CategoryRegistry codes
+  private String[] categories;
+  private final CategoryRegistry registry = CategoryRegistry.getDefault();
+
+  private int[] amountOrder;
+  // IDs of rows copied out of a model, null for new transactions
+  long[] ids;
+
+  public TransactionBatch(int capacity) {
+    capacity = Math.max(capacity, 1);
+    amounts = new double[capacity];
+    createdAt = new long[capacity];
+    categoryCodes = new short[capacity];
+  }
+
+  private TransactionBatch() {
+  }
+
+  /**
+   * Wraps columns that were read back from storage, without copying or validating them.
+   *
+   * @param categories the category of each code used in categoryCodes
+   * @param amountOrder the positions of the batch ordered by amount, or null if unknown
+   */
+  public static TransactionBatch wrap(double[] amounts, long[] createdAt, short[] categoryCodes,
+      String[] categories, int size, int[] amountOrder) {
+    if (amounts.length < size || createdAt.length < size || categoryCodes.length < size
+        || (amountOrder != null && amountOrder.length < size)) {
+      throw new IllegalArgumentException("The columns must hold " + size + " transactions.");
+    }
+    TransactionBatch batch = new TransactionBatch();
+    batch.amounts = amounts;
+    batch.createdAt = createdAt;
+    batch.categoryCodes = categoryCodes;
+    batch.size = size;
+    batch.categories = categories;
+    batch.amountOrder = amountOrder;
+    return batch;
+  }
+
+  /**
+   * Adds a transaction to the batch, validated like the Transaction constructor does.
+   */
+  public void add(double amount, String category, long time) {
+    if (categories != null) {
+      throw new IllegalStateException("A wrapped batch cannot be changed.");
+    }
+    if (!InputValidation.isValidAmount(amount)) {
+      throw new IllegalArgumentException("The amount is not valid.");
+    }
+    int code = registry.lookup(category);
+    if (code == -1) {
+      throw new IllegalArgumentException("The category is not valid.");
+    }
+    if (size == amounts.length) {
+      int capacity = size + (size >> 1) + 1;
+      amounts = Arrays.copyOf(amounts, capacity);
+      createdAt = Arrays.copyOf(createdAt, capacity);
+      categoryCodes = Arrays.copyOf(categoryCodes, capacity);
+    }
+    amounts[size] = amount;
+    createdAt[size] = time;
+    categoryCodes[size] = (short) code;
+    amountOrder = null;
+    size++;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public double getAmount(int index) {
+    checkIndex(index);
+    return amounts[index];
+  }
+
+  public long getCreatedAt(int index) {
+    checkIndex(index);
+    return createdAt[index];
+  }
+
+  public int getCategoryCode(int index) {
+    checkIndex(index);
+    return categoryCodes[index];
+  }
+
+  public String getCategory(int index) {
+    return getCategoryForCode(getCategoryCode(index));
+  }
+
+  public int getCategoryCodeCount() {
+    return categories == null ? registry.size() : categories.length;
+  }
+
+  public String getCategoryForCode(int code) {
+    if (categories == null) {
+      return registry.getName(code);
+    }
+    if (code < 0 || code >= categories.length) {
+      throw new IndexOutOfBoundsException("Unknown category code: " + code);
+    }
+    return categories[code];
+  }
+
+  /**
+   * @return the positions of the batch ordered by amount, or null if unknown
+   */
+  public int[] getAmountOrder() {
+    return amountOrder;
+  }
+
+  // The columns are read in bulk by the TransactionStore and the AmountIndex
+  double[] amounts() {
+    return amounts;
+  }
+
+  long[] createdAt() {
+    return createdAt;
+  }
+
+  short[] categoryCodes() {
+    return categoryCodes;
+  }
+
+  private void checkIndex(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Index " + index + " is out of bounds for " + size + " transactions");
+    }
+  }
+
+}
@@ -0,0 +1,314 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * Multi-level undo and redo for the changes made to an ExpenseTrackerModel:
+ * adds, bulk adds such as an import, removals and clears.
+ *
+ * Once attached, the model records every change here. The commands live in
+ * a ring buffer with a cursor. Undoing a command only moves the cursor back
+ * and applies its inverse; the undone command is kept after the cursor until
+ * it is redone or a new change overwrites it. Every command remembers the
+ * rows it touched, so it is undone without searching the model:
+ *   add      the rows were appended, undoing drops them off the end; the
+ *            sorted indexes still delete their entries from inside a run
+ *   remove   the transaction is put back at its old row, into the slot of
+ *            the store it was removed from
+ *   update   the old amount and category are put back
+ *   clear    the model keeps its detached contents, undoing swaps them back
+ *
+ * Commands recorded between beginGroup() and endGroup() are undone and
+ * redone together. Only the last capacity commands are kept.
+ */
+public class TransactionHistory {
+
+  public static final int DEFAULT_CAPACITY = 1000;
+
+  private static final int ADD = 0;
+  private static final int REMOVE = 1;
+  private static final int INSERT = 2;
+  private static final int CLEAR = 3;
+  private static final int UPDATE = 4;
+
+  private static final class Command {
+    final int type;
+    final int row;
+    final int count;
+    final long group;
+    // Set while the rows are not in the model, to put them back
+    Transaction transaction;
+    TransactionBatch batch;
+    ExpenseTrackerModel.Contents contents;
+
+    Command(int type, int row, int count, long group) {
+      this.type = type;
+      this.row = row;
+      this.count = count;
+      this.group = group;
+    }
+  }
+
+  private final ExpenseTrackerModel model;
+  private final Command[] commands;
+  // Position of the oldest command, followed by the applied ones and then the undone ones
+  private int first;
+  private int undoCount;
+  private int redoCount;
+
+  private long lastGroup;
+  private long group;
+  private int groupDepth;
+  // Set while a command is undone or redone, so the model changes are not recorded again
+  private boolean applying;
+
+  public TransactionHistory(ExpenseTrackerModel model) {
+    this(model, DEFAULT_CAPACITY);
+  }
+
+  public TransactionHistory(ExpenseTrackerModel model, int capacity) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("The capacity must be positive.");
+    }
+    this.model = model;
+    this.commands = new Command[capacity];
+    model.setHistory(this);
+  }
+
+  /**
+   * Stops recording the changes of the model and forgets every command.
+   */
+  public void detach() {
+    model.setHistory(null);
+    reset();
+  }
+
+  /**
+   * Forgets every command, e.g. after loading transactions that should not be undone.
+   */
+  public void reset() {
+    Arrays.fill(commands, null);
+    first = 0;
+    undoCount = 0;
+    redoCount = 0;
+  }
+
+  public boolean canUndo() {
+    return undoCount > 0;
+  }
+
+  public boolean canRedo() {
+    return redoCount > 0;
+  }
+
+  public int getUndoCount() {
+    return undoCount;
+  }
+
+  public int getRedoCount() {
+    return redoCount;
+  }
+
+  /**
+   * Starts a group of changes that are undone and redone as one. Groups can be
+   * nested, the outermost one decides.
+   */
+  public void beginGroup() {
+    if (groupDepth++ == 0) {
+      group = ++lastGroup;
+    }
+  }
+
+  /**
+   * @return a new group for changes made at different times, see beginGroup(long)
+   */
+  public long newGroup() {
+    return ++lastGroup;
+  }
+
+  /**
+   * Starts a group like beginGroup(), but continues a group from newGroup().
+   * The changes made in it are undone as one with the earlier changes of the
+   * group, unless other changes were made in between, e.g. while the chunks
+   * of an import are added one by one.
+   */
+  public void beginGroup(long group) {
+    if (group <= 0 || group > lastGroup) {
+      throw new IllegalArgumentException("Unknown group: " + group);
+    }
+    if (groupDepth++ == 0) {
+      this.group = group;
+    }
+  }
+
+  public void endGroup() {
+    if (groupDepth == 0) {
+      throw new IllegalStateException("No group was started.");
+    }
+    if (--groupDepth == 0) {
+      group = 0;
+    }
+  }
+
+  /**
+   * Undoes the last change, or the last group of changes.
+   *
+   * @return false if there was nothing to undo
+   */
+  public boolean undo() {
+    if (undoCount == 0) {
+      return false;
+    }
+    long undoneGroup = command(undoCount - 1).group;
+    applying = true;
+    try {
+      do {
+        undo(command(undoCount - 1));
+        undoCount--;
+        redoCount++;
+      } while (undoneGroup != 0 && undoCount > 0 && command(undoCount - 1).group == undoneGroup);
+    } finally {
+      applying = false;
+    }
+    return true;
+  }
+
+  /**
+   * Redoes the last undone change, or group of changes.
+   *
+   * @return false if there was nothing to redo
+   */
+  public boolean redo() {
+    if (redoCount == 0) {
+      return false;
+    }
+    long redoneGroup = command(undoCount).group;
+    applying = true;
+    try {
+      do {
+        redo(command(undoCount));
+        undoCount++;
+        redoCount--;
+      } while (redoneGroup != 0 && redoCount > 0 && command(undoCount).group == redoneGroup);
+    } finally {
+      applying = false;
+    }
+    return true;
+  }
+
+  void recordAdd(int firstRow, int count) {
+    record(new Command(ADD, firstRow, count, group));
+  }
+
+  void recordRemove(int row, Transaction removed) {
+    Command command = new Command(REMOVE, row, 1, group);
+    command.transaction = removed;
+    record(command);
+  }
+
+  void recordInsert(int row) {
+    record(new Command(INSERT, row, 1, group));
+  }
+
+  void recordUpdate(int row, Transaction old) {
+    Command command = new Command(UPDATE, row, 1, group);
+    command.transaction = old;
+    record(command);
+  }
+
+  void recordClear(ExpenseTrackerModel.Contents cleared) {
+    Command command = new Command(CLEAR, 0, 0, group);
+    command.contents = cleared;
+    record(command);
+  }
+
+  private void record(Command command) {
+    if (applying) {
+      return;
+    }
+    // A new change drops the undone commands
+    for (int i = 0; i < redoCount; i++) {
+      commands[position(undoCount + i)] = null;
+    }
+    redoCount = 0;
+    if (undoCount == commands.length) {
+      commands[first] = null;
+      first = position(1);
+      undoCount--;
+    }
+    commands[position(undoCount)] = command;
+    undoCount++;
+  }
+
+  private void undo(Command command) {
+    switch (command.type) {
+      case ADD:
+        if (command.count == 1) {
+          command.transaction = model.getTransaction(command.row);
+        } else {
+          command.batch = model.copyRows(command.row, command.row + command.count);
+        }
+        model.removeTransactionsFrom(command.row);
+        break;
+      case REMOVE:
+        model.insertTransactionAt(command.row, command.transaction);
+        command.transaction = null;
+        break;
+      case INSERT:
+        command.transaction = model.getTransaction(command.row);
+        model.removeTransactionAt(command.row);
+        break;
+      case UPDATE:
+        command.transaction = swap(command.row, command.transaction);
+        break;
+      default:
+        model.restoreContents(command.contents);
+        command.contents = null;
+        break;
+    }
+  }
+
+  private void redo(Command command) {
+    switch (command.type) {
+      case ADD:
+        if (command.count == 1) {
+          model.addTransaction(command.transaction);
+        } else {
+          model.addTransactions(command.batch);
+        }
+        command.transaction = null;
+        command.batch = null;
+        break;
+      case REMOVE:
+        command.transaction = model.getTransaction(command.row);
+        model.removeTransactionAt(command.row);
+        break;
+      case INSERT:
+        model.insertTransactionAt(command.row, command.transaction);
+        command.transaction = null;
+        break;
+      case UPDATE:
+        command.transaction = swap(command.row, command.transaction);
+        break;
+      default:
+        command.contents = model.detachContents();
+        break;
+    }
+  }
+
+  // Puts the values back into the row and returns the ones they replaced
+  private Transaction swap(int row, Transaction values) {
+    Transaction current = model.getTransaction(row);
+    model.updateTransactionAt(row, values.getAmount(), values.getCategory());
+    return current;
+  }
+
+  private Command command(int index) {
+    return commands[position(index)];
+  }
+
+  private int position(int index) {
+    return (first + index) % commands.length;
+  }
+
+}
@@ -0,0 +1,157 @@
+package model;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * Immutable point-in-time view of the transactions of a
+ * ConcurrentExpenseTrackerModel. Rows are read from the chunks of the model
+ * when asked for, creating a snapshot copies nothing.
+ */
+public class TransactionSnapshot extends AbstractList<Transaction> implements RandomAccess {
+
+  private final ConcurrentExpenseTrackerModel.Version version;
+  // Number of rows in the chunks, including the removed ones
+  private final int physicalSize;
+
+  TransactionSnapshot(ConcurrentExpenseTrackerModel.Version version, int physicalSize) {
+    this.version = version;
+    this.physicalSize = physicalSize;
+  }
+
+  /**
+   * @return the number of the version of the model the snapshot was taken from,
+   *         it increases with every removal and clear
+   */
+  public long getVersion() {
+    return version.number;
+  }
+
+  @Override
+  public int size() {
+    return physicalSize - version.removed.length;
+  }
+
+  @Override
+  public Transaction get(int index) {
+    int row = physicalRow(index);
+    return Transaction.ofStoredRow(amount(row), code(row), createdAt(row));
+  }
+
+  public double getAmount(int index) {
+    return amount(physicalRow(index));
+  }
+
+  public String getCategory(int index) {
+    return CategoryRegistry.getDefault().getName(code(physicalRow(index)));
+  }
+
+  public long getCreatedAt(int index) {
+    return createdAt(physicalRow(index));
+  }
+
+  public double getTotalAmount() {
+    double total = 0;
+    int[] removed = version.removed;
+    int next = 0;
+    for (int row = 0; row < physicalSize; row++) {
+      if (next < removed.length && removed[next] == row) {
+        next++;
+        continue;
+      }
+      total += amount(row);
+    }
+    return total;
+  }
+
+  /**
+   * Copies the transactions into a batch, e.g. to add them to an ExpenseTrackerModel.
+   */
+  public TransactionBatch toBatch() {
+    int size = size();
+    double[] amounts = new double[size];
+    long[] times = new long[size];
+    short[] codes = new short[size];
+    int[] removed = version.removed;
+    int next = 0;
+    int index = 0;
+    for (int row = 0; row < physicalSize; row++) {
+      if (next < removed.length && removed[next] == row) {
+        next++;
+        continue;
+      }
+      amounts[index] = amount(row);
+      times[index] = createdAt(row);
+      codes[index] = code(row);
+      index++;
+    }
+    CategoryRegistry registry = CategoryRegistry.getDefault();
+    String[] names = new String[registry.size()];
+    for (int code = 0; code < names.length; code++) {
+      names[code] = registry.getName(code);
+    }
+    return TransactionBatch.wrap(amounts, times, codes, names, size, null);
+  }
+
+  // Scans the columns instead of creating a view per row
+  @Override
+  public int indexOf(Object o) {
+    if (!(o instanceof Transaction)) {
+      return -1;
+    }
+    Transaction t = (Transaction) o;
+    // The rows of a snapshot have no IDs, so they only equal transactions without one
+    if (t.getId() != 0) {
+      return -1;
+    }
+    int[] removed = version.removed;
+    int next = 0;
+    for (int row = 0; row < physicalSize; row++) {
+      if (next < removed.length && removed[next] == row) {
+        next++;
+        continue;
+      }
+      if (createdAt(row) == t.getCreatedAt() && Double.compare(amount(row), t.getAmount()) == 0
+          && code(row) == t.getCategoryCode()) {
+        return row - next;
+      }
+    }
+    return -1;
+  }
+
+  // Maps an index of the snapshot to a row in the chunks by skipping the removed rows
+  int physicalRow(int index) {
+    if (index < 0 || index >= size()) {
+      throw new IndexOutOfBoundsException("Index " + index + " is out of bounds for " + size() + " transactions");
+    }
+    int[] removed = version.removed;
+    int row = index;
+    while (true) {
+      int skipped = removedUpTo(removed, row);
+      if (index + skipped == row) {
+        return row;
+      }
+      row = index + skipped;
+    }
+  }
+
+  // Number of removed rows at or below the given row
+  private static int removedUpTo(int[] removed, int row) {
+    int position = Arrays.binarySearch(removed, row);
+    return position >= 0 ? position + 1 : -position - 1;
+  }
+
+  private double amount(int row) {
+    return version.rows.amount(row);
+  }
+
+  private long createdAt(int row) {
+    return version.rows.createdAt(row);
+  }
+
+  private short code(int row) {
+    return version.rows.code(row);
+  }
+
+}
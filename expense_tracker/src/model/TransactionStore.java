@@ -0,0 +1,608 @@
+package model;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * Columnar storage for the transactions of the ExpenseTrackerModel.
+ *
+ * Every field lives in its own growable primitive array: amounts as doubles,
+ * categories as their short codes in the CategoryRegistry and creation times
+ * as epoch milliseconds, next to the ID the model gave each row. Scanning one
+ * field walks contiguous memory, and a Transaction object is only created
+ * when a row is read through the List interface.
+ *
+ * Each row lives in a slot that it keeps while it is stored, so the indexes
+ * of the model refer to slots and removing a row moves no data: its slot is
+ * only marked as removed. The rows are the slots that were not removed, in
+ * slot order. While some slots are removed, the row of a slot is the number
+ * of rows before its block of 4096 slots, plus the ones before its word of
+ * 64 slots in the block, plus the ones before it in the word. The slot of a
+ * row is found by binary search over the same counts. A removal updates the
+ * counts of the words after it in its block and of the later blocks.
+ * compact() moves the rows into consecutive slots again.
+ *
+ * Only the model mutates a store. The List mutators inherited from
+ * AbstractList throw UnsupportedOperationException, so the copies handed
+ * out by the model are read-only.
+ */
+public class TransactionStore extends AbstractList<Transaction> implements RandomAccess {
+
+  private static final int INITIAL_CAPACITY = 16;
+  // Slots per block of the row counts, 64 words of removed bits
+  private static final int BLOCK_SHIFT = 12;
+
+  private double[] amounts;
+  private short[] categoryCodes;
+  private long[] createdAt;
+  private long[] ids;
+  // Slots in use, the removed ones included
+  private int slots;
+  // Slots that were not removed
+  private int size;
+
+  // A set bit for every removed slot, clear beyond the slots in use
+  private long[] removed;
+  // Rows in the slots before every block
+  private int[] blockRows;
+  // Rows in the slots of its block before every word of removed
+  private int[] wordRows;
+
+  private final CategoryRegistry categories = CategoryRegistry.getDefault();
+
+  TransactionStore() {
+    this(INITIAL_CAPACITY);
+  }
+
+  private TransactionStore(int capacity) {
+    amounts = new double[capacity];
+    categoryCodes = new short[capacity];
+    createdAt = new long[capacity];
+    ids = new long[capacity];
+    removed = new long[words(capacity)];
+    blockRows = new int[blocks(capacity)];
+    wordRows = new int[words(capacity)];
+  }
+
+  // The copy holds the rows in consecutive slots
+  private TransactionStore(TransactionStore other) {
+    this(other.size);
+    for (int slot = 0; slot < other.slots; slot++) {
+      if (!other.isRemoved(slot)) {
+        amounts[size] = other.amounts[slot];
+        categoryCodes[size] = other.categoryCodes[slot];
+        createdAt[size] = other.createdAt[slot];
+        ids[size] = other.ids[slot];
+        size++;
+      }
+    }
+    slots = size;
+    resetMapping();
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public Transaction get(int row) {
+    return transactionAt(slot(row));
+  }
+
+  public double getAmount(int row) {
+    return amounts[slot(row)];
+  }
+
+  public int getCategoryCode(int row) {
+    return categoryCodes[slot(row)];
+  }
+
+  public String getCategory(int row) {
+    return categories.getName(categoryCodes[slot(row)]);
+  }
+
+  public long getCreatedAt(int row) {
+    return createdAt[slot(row)];
+  }
+
+  public long getId(int row) {
+    return ids[slot(row)];
+  }
+
+  public String getTimestamp(int row) {
+    return Transaction.formatTimestamp(getCreatedAt(row));
+  }
+
+  /**
+   * @return the number of registered categories, codes range from 0 to this value - 1
+   */
+  public int getCategoryCodeCount() {
+    return categories.size();
+  }
+
+  public String getCategoryForCode(int code) {
+    return categories.getName(code);
+  }
+
+  /**
+   * @return the code of the category ignoring case, or -1 if it is not registered
+   */
+  public int getCodeForCategory(String category) {
+    return categories.lookup(category);
+  }
+
+  public double getTotalAmount() {
+    double total = 0;
+    for (int slot = 0; slot < slots; slot++) {
+      if (!isRemoved(slot)) {
+        total += amounts[slot];
+      }
+    }
+    return total;
+  }
+
+  // Compares the primitive columns directly instead of creating a view per row
+  @Override
+  public int indexOf(Object o) {
+    if (!(o instanceof Transaction)) {
+      return -1;
+    }
+    // Rows with equal values but another ID are distinct transactions
+    return indexOf((Transaction) o, true);
+  }
+
+  /**
+   * @return the first row holding the values of the transaction, whatever its ID
+   */
+  int indexOfValues(Transaction t) {
+    return indexOf(t, false);
+  }
+
+  private int indexOf(Transaction t, boolean sameId) {
+    int code = t.getCategoryCode();
+    double amount = t.getAmount();
+    long time = t.getCreatedAt();
+    int row = 0;
+    for (int slot = 0; slot < slots; slot++) {
+      if (isRemoved(slot)) {
+        continue;
+      }
+      if (createdAt[slot] == time && categoryCodes[slot] == code
+          && Double.compare(amounts[slot], amount) == 0 && (!sameId || ids[slot] == t.getId())) {
+        return row;
+      }
+      row++;
+    }
+    return -1;
+  }
+
+  /**
+   * @return the slot of the new row
+   */
+  int append(Transaction t, long id) {
+    if (slots == amounts.length) {
+      grow(slots + (slots >> 1) + 1);
+    }
+    int slot = slots;
+    amounts[slot] = t.getAmount();
+    categoryCodes[slot] = (short) t.getCategoryCode();
+    createdAt[slot] = t.getCreatedAt();
+    ids[slot] = id;
+    addSlots(1);
+    return slot;
+  }
+
+  /**
+   * Appends the rows of the batch to consecutive slots, starting at getSlotCount().
+   */
+  void appendAll(TransactionBatch batch, long[] batchIds) {
+    int count = batch.size();
+    if (slots + count > amounts.length) {
+      grow(Math.max(slots + count, slots + (slots >> 1)));
+    }
+    System.arraycopy(batch.amounts(), 0, amounts, slots, count);
+    System.arraycopy(batch.createdAt(), 0, createdAt, slots, count);
+    System.arraycopy(batchIds, 0, ids, slots, count);
+    // Translate the codes of the batch to registry codes. Batches read from
+    // storage may name categories that were defined in an earlier session.
+    short[] mapping = new short[batch.getCategoryCodeCount()];
+    for (int code = 0; code < mapping.length; code++) {
+      mapping[code] = (short) categories.register(batch.getCategoryForCode(code));
+    }
+    short[] codes = batch.categoryCodes();
+    for (int i = 0; i < count; i++) {
+      categoryCodes[slots + i] = mapping[codes[i]];
+    }
+    addSlots(count);
+  }
+
+  // Counts the slots written after the last one as rows
+  private void addSlots(int count) {
+    for (int i = 0; i < count; i++, slots++, size++) {
+      if ((slots & ((1 << BLOCK_SHIFT) - 1)) == 0) {
+        blockRows[slots >> BLOCK_SHIFT] = size;
+      }
+      if ((slots & 63) == 0) {
+        wordRows[slots >> 6] = size - blockRows[slots >> BLOCK_SHIFT];
+      }
+    }
+  }
+
+  /**
+   * Marks the slot of a row as removed. The rows after it move down by one
+   * without moving their data, only the row counts after the slot change:
+   * up to 63 word counts in its block and one count per later block, so a
+   * removal takes time in the number of slots / 4096.
+   */
+  void removeSlot(int slot) {
+    removed[slot >> 6] |= 1L << slot;
+    size--;
+    countRowsAfter(slot, -1);
+  }
+
+  /**
+   * @return a removed slot between the slots of the rows row - 1 and row, the
+   *     one that held the ID if there is one, or -1 if there is no such slot
+   */
+  int removedSlotAt(int row, long id) {
+    if (row < 0 || row > size) {
+      throw new IndexOutOfBoundsException("Row " + row + " is out of bounds for " + size + " transactions");
+    }
+    // Every slot between the two rows was removed
+    int start = endSlot(row);
+    int end = row == size ? slots : slot(row);
+    for (int slot = start; slot < end; slot++) {
+      if (ids[slot] == id) {
+        return slot;
+      }
+    }
+    return start < end ? end - 1 : -1;
+  }
+
+  /**
+   * Stores the transaction in a removed slot from removedSlotAt(), which
+   * holds a row again. The rows after it move up by one.
+   */
+  void revive(int slot, Transaction t, long id) {
+    amounts[slot] = t.getAmount();
+    categoryCodes[slot] = (short) t.getCategoryCode();
+    createdAt[slot] = t.getCreatedAt();
+    ids[slot] = id;
+    removed[slot >> 6] &= ~(1L << slot);
+    size++;
+    countRowsAfter(slot, 1);
+  }
+
+  // Adds to the row counts of the words after the slot in its block and of the later blocks
+  private void countRowsAfter(int slot, int delta) {
+    int block = slot >> BLOCK_SHIFT;
+    int endWord = Math.min((block + 1) << (BLOCK_SHIFT - 6), words(slots));
+    for (int word = (slot >> 6) + 1; word < endWord; word++) {
+      wordRows[word] += delta;
+    }
+    for (int later = block + 1; later < blocks(slots); later++) {
+      blockRows[later] += delta;
+    }
+  }
+
+  /**
+   * Stores the transaction in a new row at the given position, moving every
+   * row into consecutive slots again. This copies all rows, it is meant for
+   * rare inserts where removedSlotAt() finds no slot, e.g. putting back a row
+   * whose slot was compacted away.
+   *
+   * @return the new slot of every old slot, -1 for the removed ones
+   */
+  int[] insert(int row, Transaction t, long id) {
+    if (row < 0 || row > size) {
+      throw new IndexOutOfBoundsException("Row " + row + " is out of bounds for " + size + " transactions");
+    }
+    int[] moved = compact(row);
+    amounts[row] = t.getAmount();
+    categoryCodes[row] = (short) t.getCategoryCode();
+    createdAt[row] = t.getCreatedAt();
+    ids[row] = id;
+    return moved;
+  }
+
+  /**
+   * Moves the rows into consecutive slots, dropping the removed slots.
+   *
+   * @return the new slot of every old slot, -1 for the removed ones
+   */
+  int[] compact() {
+    return compact(-1);
+  }
+
+  // Leaves the slot of gapRow free for a new row unless it is -1
+  private int[] compact(int gapRow) {
+    int rows = gapRow == -1 ? size : size + 1;
+    if (rows > amounts.length) {
+      grow(rows + (rows >> 1));
+    }
+    int[] moved = new int[slots];
+    int next = 0;
+    for (int slot = 0; slot < slots; slot++) {
+      if (isRemoved(slot)) {
+        moved[slot] = -1;
+        continue;
+      }
+      if (next == gapRow) {
+        next++;
+      }
+      moved[slot] = next++;
+      if (moved[slot] <= slot) {
+        move(slot, moved[slot]);
+      }
+    }
+    // Only the rows between the gap and the first removed slot move up, by one.
+    // They are copied from the back so none is overwritten before it is read.
+    for (int slot = slots - 1; slot >= 0; slot--) {
+      if (moved[slot] > slot) {
+        move(slot, moved[slot]);
+      }
+    }
+    Arrays.fill(removed, 0, words(slots), 0);
+    slots = size = rows;
+    resetMapping();
+    return moved;
+  }
+
+  private void move(int from, int to) {
+    amounts[to] = amounts[from];
+    categoryCodes[to] = categoryCodes[from];
+    createdAt[to] = createdAt[from];
+    ids[to] = ids[from];
+  }
+
+  // Replaces the amount and category of a slot, the row keeps its time and ID
+  void update(int slot, double amount, int categoryCode) {
+    amounts[slot] = amount;
+    categoryCodes[slot] = (short) categoryCode;
+  }
+
+  /**
+   * Drops every row from firstRow on, together with the removed slots before
+   * them. The columns are not touched.
+   */
+  void truncate(int firstRow) {
+    if (firstRow < 0 || firstRow > size) {
+      throw new IndexOutOfBoundsException("Row " + firstRow + " is out of bounds for " + size + " transactions");
+    }
+    int end = endSlot(firstRow);
+    for (int slot = end; slot < slots; slot++) {
+      removed[slot >> 6] &= ~(1L << slot);
+    }
+    slots = end;
+    size = firstRow;
+  }
+
+  void reset() {
+    Arrays.fill(removed, 0, words(slots), 0);
+    slots = 0;
+    size = 0;
+  }
+
+  /**
+   * @return the number of slots in use, the removed ones included
+   */
+  int getSlotCount() {
+    return slots;
+  }
+
+  /**
+   * @return the number of removed slots that are not compacted yet
+   */
+  int getRemovedCount() {
+    return slots - size;
+  }
+
+  boolean isRemoved(int slot) {
+    return (removed[slot >> 6] & (1L << slot)) != 0;
+  }
+
+  /**
+   * @return the slot after the last slot kept when the rows from firstRow on are dropped
+   */
+  int endSlot(int firstRow) {
+    return firstRow == 0 ? 0 : slot(firstRow - 1) + 1;
+  }
+
+  /**
+   * @return the slot holding a row
+   */
+  int slot(int row) {
+    checkRow(row);
+    if (slots == size) {
+      return row;
+    }
+    // The last block and then the last word in it with no more rows before it than the row
+    int block = lastAtMost(blockRows, 0, blocks(slots), row);
+    int firstWord = block << (BLOCK_SHIFT - 6);
+    int rowInBlock = row - blockRows[block];
+    int word = lastAtMost(wordRows, firstWord, Math.min(firstWord + 64, words(slots)), rowInBlock);
+    long live = ~removed[word];
+    for (int skip = rowInBlock - wordRows[word]; skip > 0; skip--) {
+      live &= live - 1;
+    }
+    return (word << 6) + Long.numberOfTrailingZeros(live);
+  }
+
+  /**
+   * @return the row held by a slot that was not removed
+   */
+  int row(int slot) {
+    return slots == size ? slot : rowsBefore(slot);
+  }
+
+  // The last position in [from, to) with counts[position] <= value, counts[from] must be
+  private static int lastAtMost(int[] counts, int from, int to, int value) {
+    int low = from;
+    int high = to - 1;
+    while (low < high) {
+      int mid = (low + high + 1) >>> 1;
+      if (counts[mid] <= value) {
+        low = mid;
+      } else {
+        high = mid - 1;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Maps slots read from an index to their rows, dropping the removed slots.
+   * The array is reused.
+   *
+   * @return the rows, in the order of the slots
+   */
+  int[] rowsOf(int[] indexSlots) {
+    if (slots == size) {
+      return indexSlots;
+    }
+    int count = 0;
+    for (int slot : indexSlots) {
+      if (!isRemoved(slot)) {
+        indexSlots[count++] = rowsBefore(slot);
+      }
+    }
+    return count == indexSlots.length ? indexSlots : Arrays.copyOf(indexSlots, count);
+  }
+
+  Transaction transactionAt(int slot) {
+    return Transaction.ofStoredRow(amounts[slot], categoryCodes[slot], createdAt[slot], ids[slot]);
+  }
+
+  double amountAt(int slot) {
+    return amounts[slot];
+  }
+
+  int categoryCodeAt(int slot) {
+    return categoryCodes[slot];
+  }
+
+  long timeAt(int slot) {
+    return createdAt[slot];
+  }
+
+  long idAt(int slot) {
+    return ids[slot];
+  }
+
+  TransactionStore copy() {
+    return new TransactionStore(this);
+  }
+
+  /**
+   * @return a copy holding the rows in the same slots, so the slots of an
+   *     index copied along with it still refer to them
+   */
+  TransactionStore copySlots() {
+    TransactionStore copy = new TransactionStore(0);
+    copy.amounts = Arrays.copyOf(amounts, slots);
+    copy.categoryCodes = Arrays.copyOf(categoryCodes, slots);
+    copy.createdAt = Arrays.copyOf(createdAt, slots);
+    copy.ids = Arrays.copyOf(ids, slots);
+    copy.removed = Arrays.copyOf(removed, words(slots));
+    copy.blockRows = Arrays.copyOf(blockRows, blocks(slots));
+    copy.wordRows = Arrays.copyOf(wordRows, words(slots));
+    copy.slots = slots;
+    copy.size = size;
+    return copy;
+  }
+
+  TransactionBatch toBatch(int[] amountOrder) {
+    return copyRows(0, size, amountOrder, false);
+  }
+
+  /**
+   * @return a batch holding the rows from firstRow up to, but not including, endRow
+   */
+  TransactionBatch copyRows(int firstRow, int endRow) {
+    return copyRows(firstRow, endRow, null, true);
+  }
+
+  private TransactionBatch copyRows(int firstRow, int endRow, int[] amountOrder, boolean withIds) {
+    int count = endRow - firstRow;
+    double[] batchAmounts = new double[count];
+    long[] batchCreatedAt = new long[count];
+    short[] batchCodes = new short[count];
+    long[] batchIds = withIds ? new long[count] : null;
+    int slot = count == 0 ? 0 : slot(firstRow);
+    for (int i = 0; i < count; i++, slot++) {
+      slot = nextSlot(slot);
+      batchAmounts[i] = amounts[slot];
+      batchCreatedAt[i] = createdAt[slot];
+      batchCodes[i] = categoryCodes[slot];
+      if (withIds) {
+        batchIds[i] = ids[slot];
+      }
+    }
+    TransactionBatch batch = TransactionBatch.wrap(batchAmounts, batchCreatedAt, batchCodes, categoryNames(), count,
+        amountOrder);
+    // The rows get their IDs back when the batch is added again
+    batch.ids = batchIds;
+    return batch;
+  }
+
+  // The first slot from the given one on that was not removed, there must be one
+  private int nextSlot(int slot) {
+    int word = slot >> 6;
+    long live = ~removed[word] & (-1L << slot);
+    while (live == 0) {
+      live = ~removed[++word];
+    }
+    return (word << 6) + Long.numberOfTrailingZeros(live);
+  }
+
+  // Number of rows in the slots before the given one
+  private int rowsBefore(int slot) {
+    int word = slot >> 6;
+    return blockRows[slot >> BLOCK_SHIFT] + wordRows[word] + Long.bitCount(~removed[word] & ((1L << slot) - 1));
+  }
+
+  // Every row is in the slot of the same number
+  private void resetMapping() {
+    for (int block = 0; block < blocks(slots); block++) {
+      blockRows[block] = block << BLOCK_SHIFT;
+    }
+    for (int word = 0; word < words(slots); word++) {
+      wordRows[word] = (word & ((1 << (BLOCK_SHIFT - 6)) - 1)) << 6;
+    }
+  }
+
+  private void grow(int capacity) {
+    amounts = Arrays.copyOf(amounts, capacity);
+    categoryCodes = Arrays.copyOf(categoryCodes, capacity);
+    createdAt = Arrays.copyOf(createdAt, capacity);
+    ids = Arrays.copyOf(ids, capacity);
+    removed = Arrays.copyOf(removed, words(capacity));
+    blockRows = Arrays.copyOf(blockRows, blocks(capacity));
+    wordRows = Arrays.copyOf(wordRows, words(capacity));
+  }
+
+  private static int words(int slots) {
+    return (slots + 63) >> 6;
+  }
+
+  private static int blocks(int slots) {
+    return (slots + (1 << BLOCK_SHIFT) - 1) >> BLOCK_SHIFT;
+  }
+
+  private String[] categoryNames() {
+    String[] names = new String[categories.size()];
+    for (int code = 0; code < names.length; code++) {
+      names[code] = categories.getName(code);
+    }
+    return names;
+  }
+
+  private void checkRow(int row) {
+    if (row < 0 || row >= size) {
+      throw new IndexOutOfBoundsException("Row " + row + " is out of bounds for " + size + " transactions");
+    }
+  }
+
+}
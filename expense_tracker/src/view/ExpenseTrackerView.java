@@ -1,26 +1,29 @@
 package view;
 
 import javax.swing.*;
-import javax.swing.table.DefaultTableCellRenderer;
-import javax.swing.table.DefaultTableModel;
+import javax.swing.filechooser.FileNameExtensionFilter;
 
 import java.awt.*;
 import java.awt.event.ActionListener;
 import java.text.NumberFormat;
 
+import model.ExpenseTrackerModel;
 import model.Transaction;
 
+import java.nio.file.Path;
+import java.util.BitSet;
 import java.util.List;
 
-public class ExpenseTrackerView extends JFrame {
+public class ExpenseTrackerView extends JFrame implements TransactionView {
 
   private JTable transactionsTable;
   private JButton addTransactionBtn;
   private JFormattedTextField amountField;
   private JTextField categoryField;
-  private DefaultTableModel model;
+  private TransactionTableModel model;
+  private HighlightRenderer highlightRenderer;
 
-  // private JTextField dateFilterField;
+  private JButton dateFilterBtn;
   private JTextField categoryFilterField;
   private JButton categoryFilterBtn;
 
@@ -28,6 +31,11 @@ public class ExpenseTrackerView extends JFrame {
   private JButton amountFilterBtn;
 
   private JButton undoButton;
+  private JButton importButton;
+  private JButton exportButton;
+  private JButton newCategoryButton;
+  private JButton undoLastButton;
+  private JButton redoButton;
   private boolean hasErrorMessage = false;
 
 
@@ -37,12 +45,14 @@ public class ExpenseTrackerView extends JFrame {
     setTitle("Expense Tracker"); // Set title
     setSize(600, 400); // Make GUI larger
 
-    String[] columnNames = {"serial", "Amount", "Category", "Date"};
-    this.model = new DefaultTableModel(columnNames, 0);
+    this.model = new TransactionTableModel();
 
     
     // Create table
     transactionsTable = new JTable(model);
+    // A single renderer for all cells, filters only swap its row mask
+    highlightRenderer = new HighlightRenderer();
+    transactionsTable.setDefaultRenderer(Object.class, highlightRenderer);
 
     addTransactionBtn = new JButton("Add Transaction");
 
@@ -66,7 +76,14 @@ public class ExpenseTrackerView extends JFrame {
     amountFilterField = new JTextField(10);
     amountFilterBtn = new JButton("Filter by Amount");
 
+    dateFilterBtn = new JButton("Filter by Date");
+
     undoButton = new JButton("Undo");
+    importButton = new JButton("Import CSV");
+    exportButton = new JButton("Export CSV");
+    newCategoryButton = new JButton("New Category");
+    undoLastButton = new JButton("Undo Last");
+    redoButton = new JButton("Redo");
 
 
   
@@ -77,11 +94,17 @@ public class ExpenseTrackerView extends JFrame {
     inputPanel.add(categoryLabel); 
     inputPanel.add(categoryField);
     inputPanel.add(addTransactionBtn);
+    inputPanel.add(newCategoryButton);
 
     JPanel buttonPanel = new JPanel();
     buttonPanel.add(undoButton);
+    buttonPanel.add(undoLastButton);
+    buttonPanel.add(redoButton);
     buttonPanel.add(amountFilterBtn);
     buttonPanel.add(categoryFilterBtn);
+    buttonPanel.add(dateFilterBtn);
+    buttonPanel.add(importButton);
+    buttonPanel.add(exportButton);
 
   
     // Add panels to frame
@@ -97,9 +120,21 @@ public class ExpenseTrackerView extends JFrame {
   
   }
 
-  public DefaultTableModel getTableModel() {
+  @Override
+  public TransactionTableModel getTableModel() {
     return model;
   }
+
+  /**
+   * Shows the transactions of the model in the table. From then on the table
+   * follows the changes of the model, only the affected rows are updated.
+   */
+  @Override
+  public void bindModel(ExpenseTrackerModel expenseTrackerModel) {
+    // Other threads, like the LoadGenerator, may change the model too
+    model.setChangesFromAnyThread(true);
+    model.setModel(expenseTrackerModel);
+  }
     
 
   public JTable getTransactionsTable() {
@@ -145,10 +180,80 @@ public boolean hasErrorMessage() {
     amountFilterBtn.addActionListener(listener);
   }
 
+  public void addApplyDateFilterListener(ActionListener listener) {
+    dateFilterBtn.addActionListener(listener);
+  }
+
+  /**
+   * @return the start and end of the date filter, or null if a dialog was cancelled
+   */
+  public String[] getDateFilterInput() {
+    String from = JOptionPane.showInputDialog(this, "Enter start date (dd-MM-yyyy):");
+    if (from == null) {
+      return null;
+    }
+    String to = JOptionPane.showInputDialog(this, "Enter end date (dd-MM-yyyy):");
+    if (to == null) {
+      return null;
+    }
+    return new String[] {from, to};
+  }
+
+  public void newCategoryListener(ActionListener listener) {
+    newCategoryButton.addActionListener(listener);
+  }
+
+  /**
+   * @return the name of the new category, or null if the dialog was cancelled
+   */
+  public String getNewCategoryInput() {
+    return JOptionPane.showInputDialog(this, "Enter the new category (letters only):");
+  }
+
   public void undoListener(ActionListener listener) {
     undoButton.addActionListener(listener);
   }
 
+  public void undoLastListener(ActionListener listener) {
+    undoLastButton.addActionListener(listener);
+  }
+
+  public void redoListener(ActionListener listener) {
+    redoButton.addActionListener(listener);
+  }
+
+  public void importListener(ActionListener listener) {
+    importButton.addActionListener(listener);
+  }
+
+  /**
+   * @return the CSV file chosen by the user, or null if the dialog was cancelled
+   */
+  public Path getImportFile() {
+    JFileChooser chooser = new JFileChooser();
+    chooser.setFileFilter(new FileNameExtensionFilter("CSV files", "csv"));
+    if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+      return null;
+    }
+    return chooser.getSelectedFile().toPath();
+  }
+
+  public void exportListener(ActionListener listener) {
+    exportButton.addActionListener(listener);
+  }
+
+  /**
+   * @return the file chosen by the user to export to, or null if the dialog was cancelled
+   */
+  public Path getExportFile() {
+    JFileChooser chooser = new JFileChooser();
+    chooser.setFileFilter(new FileNameExtensionFilter("CSV files", "csv"));
+    if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+      return null;
+    }
+    return chooser.getSelectedFile().toPath();
+  }
+
   public double getAmountFilterInput() {
     String input = JOptionPane.showInputDialog(this, "Enter Amount Filter:");
     try {
@@ -160,30 +265,23 @@ public boolean hasErrorMessage() {
     }
   }
 
+  /**
+   * Redisplays the transactions of the bound model.
+   */
+  @Override
+  public void refreshTable() {
+      model.showModel();
+  }
+
+  /**
+   * Displays the given transactions instead of the bound model,
+   * until refreshTable() is called.
+   */
+  @Override
   public void refreshTable(List<Transaction> transactions) {
-      // Clear existing rows
-      model.setRowCount(0);
-      // Get row count
-      int rowNum = model.getRowCount();
-      double totalCost=0;
-      // Calculate total cost
-      for(Transaction t : transactions) {
-        totalCost+=t.getAmount();
-      }
-  
-      // Add rows from transactions list
-      for(Transaction t : transactions) {
-        model.addRow(new Object[]{rowNum+=1,t.getAmount(), t.getCategory(), t.getTimestamp()}); 
-      }
-      // Add total row
-      Object[] totalRow = {"Total", null, null, totalCost};
-      model.addRow(totalRow);
-  
-      // Fire table update
-      transactionsTable.updateUI();
-  
-    }  
-  
+      model.showTransactions(transactions);
+  }
+
 
   public JButton getAddTransactionBtn() {
     return addTransactionBtn;
@@ -191,25 +289,27 @@ public boolean hasErrorMessage() {
 
 
   public void highlightRows(List<Integer> rowIndexes) {
+      BitSet rows = new BitSet();
+      for (int row : rowIndexes) {
+        rows.set(row);
+      }
+      highlightRows(rows);
+  }
+
+  @Override
+  public void highlightRows(BitSet rowIndexes) {
       // The row indices are being used as hashcodes for the transactions.
       // The row index directly maps to the the transaction index in the list.
-      transactionsTable.setDefaultRenderer(Object.class, new DefaultTableCellRenderer() {
-          @Override
-          public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected,
-                                                        boolean hasFocus, int row, int column) {
-              Component c = super.getTableCellRendererComponent(table, value, isSelected, hasFocus, row, column);
-              if (rowIndexes.contains(row)) {
-                  c.setBackground(new Color(173, 255, 168)); // Light green
-              } else {
-                  c.setBackground(table.getBackground());
-              }
-              return c;
-          }
-      });
-
+      highlightRenderer.setHighlightedRows(rowIndexes);
       transactionsTable.repaint();
   }
 
+  @Override
+  public void showMessage(String message) {
+    JOptionPane.showMessageDialog(this, message);
+    toFront();
+  }
+
   public void displayErrorMessage(String message) {
         JOptionPane.showMessageDialog(this, message, "Error", JOptionPane.ERROR_MESSAGE);
         hasErrorMessage = true;
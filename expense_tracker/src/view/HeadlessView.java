@@ -0,0 +1,97 @@
+package view;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import model.ExpenseTrackerModel;
+import model.Transaction;
+
+/**
+ * A view without a window. It keeps a table model bound to the model like the
+ * Swing view does, so the controller maps rows to transactions the same way,
+ * and records what it was asked to show instead of painting it.
+ *
+ * Filters may be highlighted from several threads at once, so the recorded
+ * state can be read from any thread.
+ */
+public class HeadlessView implements TransactionView {
+
+  // Messages beyond this are only counted, a long load test must not fill the memory
+  public static final int MAX_MESSAGES = 100;
+
+  private final TransactionTableModel tableModel = new TransactionTableModel();
+  private volatile BitSet highlightedRows = new BitSet();
+  private final AtomicLong highlightCount = new AtomicLong();
+  private final AtomicLong refreshCount = new AtomicLong();
+  private final AtomicLong messageCount = new AtomicLong();
+  private final List<String> messages = new ArrayList<>();
+
+  @Override
+  public void bindModel(ExpenseTrackerModel model) {
+    tableModel.setModel(model);
+  }
+
+  @Override
+  public void refreshTable() {
+    tableModel.showModel();
+    refreshCount.incrementAndGet();
+  }
+
+  @Override
+  public void refreshTable(List<Transaction> transactions) {
+    tableModel.showTransactions(transactions);
+    refreshCount.incrementAndGet();
+  }
+
+  @Override
+  public void highlightRows(BitSet rowIndexes) {
+    highlightedRows = rowIndexes;
+    highlightCount.incrementAndGet();
+  }
+
+  @Override
+  public TransactionTableModel getTableModel() {
+    return tableModel;
+  }
+
+  @Override
+  public void showMessage(String message) {
+    messageCount.incrementAndGet();
+    synchronized (messages) {
+      if (messages.size() < MAX_MESSAGES) {
+        messages.add(message);
+      }
+    }
+  }
+
+  /**
+   * @return the rows of the last highlightRows call
+   */
+  public BitSet getHighlightedRows() {
+    return highlightedRows;
+  }
+
+  public long getHighlightCount() {
+    return highlightCount.get();
+  }
+
+  public long getRefreshCount() {
+    return refreshCount.get();
+  }
+
+  public long getMessageCount() {
+    return messageCount.get();
+  }
+
+  /**
+   * @return the first MAX_MESSAGES messages shown
+   */
+  public List<String> getMessages() {
+    synchronized (messages) {
+      return new ArrayList<>(messages);
+    }
+  }
+
+}
@@ -0,0 +1,43 @@
+package view;
+
+import java.awt.Color;
+import java.awt.Component;
+import java.util.BitSet;
+
+import javax.swing.JTable;
+import javax.swing.table.DefaultTableCellRenderer;
+
+/**
+ * Cell renderer that paints the rows set in a row mask in light green.
+ *
+ * The view installs a single instance and swaps the mask for every filter,
+ * so painting a cell is a single bit lookup.
+ */
+public class HighlightRenderer extends DefaultTableCellRenderer {
+
+  public static final Color HIGHLIGHT_COLOR = new Color(173, 255, 168); // Light green
+
+  // Set on the event dispatch thread, but read by tests on other threads
+  private volatile BitSet highlightedRows = new BitSet();
+
+  public void setHighlightedRows(BitSet highlightedRows) {
+    this.highlightedRows = highlightedRows == null ? new BitSet() : highlightedRows;
+  }
+
+  public BitSet getHighlightedRows() {
+    return highlightedRows;
+  }
+
+  @Override
+  public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected,
+                                                 boolean hasFocus, int row, int column) {
+    Component c = super.getTableCellRendererComponent(table, value, isSelected, hasFocus, row, column);
+    if (highlightedRows.get(row)) {
+      c.setBackground(HIGHLIGHT_COLOR);
+    } else if (!isSelected) {
+      c.setBackground(table.getBackground());
+    }
+    return c;
+  }
+
+}
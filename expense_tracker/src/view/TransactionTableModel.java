@@ -0,0 +1,304 @@
+package view;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.swing.SwingUtilities;
+
+import javax.swing.table.AbstractTableModel;
+
+import model.ExpenseTrackerModel;
+import model.ExpenseTrackerModelListener;
+import model.Transaction;
+import model.Metrics.LatencyHistogram;
+import model.Metrics.MetricsRegistry;
+
+/**
+ * Table model that reads its rows straight from the ExpenseTrackerModel.
+ *
+ * The last row of the table is the total row. Instead of rebuilding every row
+ * after a change, the table model forwards the events of the ExpenseTrackerModel
+ * as insert, delete and update events for the affected rows only.
+ *
+ * The JTable only asks for the cells it paints. Those are materialized a page
+ * of rows at a time, together with the page after it, and only the most
+ * recently painted pages are kept. Scrolling through millions of rows
+ * therefore formats each visible row once, and memory does not depend on the
+ * size of the ledger. The total comes from the aggregates of the model.
+ */
+public class TransactionTableModel extends AbstractTableModel implements ExpenseTrackerModelListener {
+
+  private static final String[] COLUMN_NAMES = {"serial", "Amount", "Category", "Date"};
+
+  public static final int PAGE_SIZE = 256;
+  public static final int MAX_PAGES = 8;
+
+  private static final LatencyHistogram REFRESH_TIME = MetricsRegistry.getDefault().histogram("view.refresh");
+  private static final LatencyHistogram PAGE_LOAD_TIME = MetricsRegistry.getDefault().histogram("view.pageLoad");
+
+  // Cell values of consecutive rows, ready to be painted
+  private static final class Page {
+    final Double[] amounts;
+    final String[] categories;
+    final String[] timestamps;
+
+    Page(int size) {
+      amounts = new Double[size];
+      categories = new String[size];
+      timestamps = new String[size];
+    }
+  }
+
+  // Page number -> page, least recently used first
+  private final Map<Integer, Page> pages = new LinkedHashMap<Integer, Page>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<Integer, Page> eldest) {
+      return size() > MAX_PAGES;
+    }
+  };
+
+  private ExpenseTrackerModel model;
+  // Transactions shown through refreshTable(List), the model events are ignored while set
+  private List<Transaction> transactions;
+  private double transactionsTotal;
+  // Set when other threads may change the model, see setChangesFromAnyThread()
+  private volatile boolean changesFromAnyThread;
+  private final AtomicBoolean refreshScheduled = new AtomicBoolean();
+
+  public void setModel(ExpenseTrackerModel model) {
+    if (this.model != null) {
+      this.model.removeListener(this);
+    }
+    this.model = model;
+    this.transactions = null;
+    if (model != null) {
+      model.addListener(this);
+    }
+    pages.clear();
+    fireTableDataChanged();
+  }
+
+  public ExpenseTrackerModel getModel() {
+    return model;
+  }
+
+  /**
+   * Lets other threads change the model, e.g. a background import. The changes
+   * they report are shown by a single refresh on the event dispatch thread,
+   * since their rows may have moved by the time it runs.
+   */
+  public void setChangesFromAnyThread(boolean changesFromAnyThread) {
+    this.changesFromAnyThread = changesFromAnyThread;
+  }
+
+  // True if the change was reported off the event dispatch thread and is refreshed there later
+  private boolean refreshLater() {
+    if (!changesFromAnyThread || SwingUtilities.isEventDispatchThread()) {
+      return false;
+    }
+    if (refreshScheduled.compareAndSet(false, true)) {
+      SwingUtilities.invokeLater(() -> {
+        refreshScheduled.set(false);
+        if (showsModel()) {
+          pages.clear();
+          fireTableDataChanged();
+        }
+      });
+    }
+    return true;
+  }
+
+  /**
+   * Shows the given transactions instead of the model, until the model is shown again.
+   */
+  public void showTransactions(List<Transaction> transactions) {
+    long started = REFRESH_TIME.start();
+    this.transactions = transactions;
+    transactionsTotal = 0;
+    for (Transaction t : transactions) {
+      transactionsTotal += t.getAmount();
+    }
+    pages.clear();
+    fireTableDataChanged();
+    REFRESH_TIME.stop(started);
+  }
+
+  /**
+   * Shows the transactions of the model again.
+   */
+  public void showModel() {
+    long started = REFRESH_TIME.start();
+    this.transactions = null;
+    pages.clear();
+    fireTableDataChanged();
+    REFRESH_TIME.stop(started);
+  }
+
+  private boolean showsModel() {
+    return transactions == null && model != null;
+  }
+
+  private int getTransactionCount() {
+    if (transactions != null) {
+      return transactions.size();
+    }
+    return model == null ? 0 : model.getTransactionCount();
+  }
+
+  /**
+   * @return the ID of the transaction shown in a row, or 0 for the total row
+   */
+  public long getTransactionId(int row) {
+    if (row < 0 || row >= getTransactionCount()) {
+      return 0;
+    }
+    return transactions != null ? transactions.get(row).getId() : model.getId(row);
+  }
+
+  private double getTotalCost() {
+    if (transactions == null) {
+      return model == null ? 0 : model.getTotalAmount();
+    }
+    return transactionsTotal;
+  }
+
+  @Override
+  public int getRowCount() {
+    // One more row for the total
+    return getTransactionCount() + 1;
+  }
+
+  @Override
+  public int getColumnCount() {
+    return COLUMN_NAMES.length;
+  }
+
+  @Override
+  public String getColumnName(int column) {
+    return COLUMN_NAMES[column];
+  }
+
+  @Override
+  public boolean isCellEditable(int row, int column) {
+    return false;
+  }
+
+  @Override
+  public Object getValueAt(int row, int column) {
+    int count = getTransactionCount();
+    if (row == count) {
+      return column == 0 ? "Total" : column == 3 ? getTotalCost() : null;
+    }
+    if (column == 0) {
+      return row + 1;
+    }
+    Page page = page(row / PAGE_SIZE, count);
+    int index = row % PAGE_SIZE;
+    switch (column) {
+      case 1:
+        return page.amounts[index];
+      case 2:
+        return page.categories[index];
+      default:
+        return page.timestamps[index];
+    }
+  }
+
+  /**
+   * @return the number of pages of rows currently materialized, at most MAX_PAGES
+   */
+  public int getCachedPageCount() {
+    return pages.size();
+  }
+
+  private Page page(int number, int count) {
+    Page page = pages.get(number);
+    if (page == null) {
+      // Prefetch the next page, the table is mostly scrolled down
+      int next = number + 1;
+      if (next * PAGE_SIZE < count && !pages.containsKey(next)) {
+        pages.put(next, load(next, count));
+      }
+      page = load(number, count);
+      pages.put(number, page);
+    }
+    return page;
+  }
+
+  private Page load(int number, int count) {
+    long started = PAGE_LOAD_TIME.start();
+    int first = number * PAGE_SIZE;
+    Page page = new Page(Math.min(PAGE_SIZE, count - first));
+    for (int i = 0; i < page.amounts.length; i++) {
+      int row = first + i;
+      if (transactions != null) {
+        Transaction t = transactions.get(row);
+        page.amounts[i] = t.getAmount();
+        page.categories[i] = t.getCategory();
+        page.timestamps[i] = t.getTimestamp();
+      } else {
+        page.amounts[i] = model.getAmount(row);
+        page.categories[i] = model.getCategory(row);
+        page.timestamps[i] = model.getTimestamp(row);
+      }
+    }
+    PAGE_LOAD_TIME.stop(started);
+    return page;
+  }
+
+  // Drops the pages holding the row and every row after it
+  private void invalidateFrom(int row) {
+    pages.keySet().removeIf(number -> (number + 1) * PAGE_SIZE > row);
+  }
+
+  @Override
+  public void transactionsAdded(int firstRow, int lastRow) {
+    if (!refreshLater() && showsModel()) {
+      invalidateFrom(firstRow);
+      fireTableRowsInserted(firstRow, lastRow);
+      // The total row moved below the new rows and its value changed
+      int totalRow = getTransactionCount();
+      fireTableRowsUpdated(totalRow, totalRow);
+    }
+  }
+
+  @Override
+  public void transactionRemoved(int row) {
+    if (!refreshLater() && showsModel()) {
+      invalidateFrom(row);
+      fireTableRowsDeleted(row, row);
+      // The serial numbers after the removed row and the total changed
+      fireTableRowsUpdated(row, getTransactionCount());
+    }
+  }
+
+  @Override
+  public void transactionsRemoved(int firstRow, int lastRow) {
+    if (!refreshLater() && showsModel()) {
+      invalidateFrom(firstRow);
+      fireTableRowsDeleted(firstRow, lastRow);
+      fireTableRowsUpdated(firstRow, getTransactionCount());
+    }
+  }
+
+  @Override
+  public void transactionUpdated(int row) {
+    if (!refreshLater() && showsModel()) {
+      pages.remove(row / PAGE_SIZE);
+      fireTableRowsUpdated(row, row);
+      int totalRow = getTransactionCount();
+      fireTableRowsUpdated(totalRow, totalRow);
+    }
+  }
+
+  @Override
+  public void transactionsCleared() {
+    if (!refreshLater() && showsModel()) {
+      pages.clear();
+      fireTableDataChanged();
+    }
+  }
+
+}
@@ -0,0 +1,45 @@
+package view;
+
+import java.util.BitSet;
+import java.util.List;
+
+import model.ExpenseTrackerModel;
+import model.Transaction;
+
+/**
+ * What the ExpenseTrackerController needs from a view. ExpenseTrackerView
+ * shows it in a Swing window, HeadlessView records it without one, e.g. to
+ * drive the controller on a server or under load.
+ */
+public interface TransactionView {
+
+  /**
+   * Shows the transactions of the model in the table. From then on the table
+   * follows the changes of the model.
+   */
+  public void bindModel(ExpenseTrackerModel model);
+
+  /**
+   * Shows the bound model again after refreshTable(List) was called.
+   */
+  public void refreshTable();
+
+  /**
+   * Displays the given transactions instead of the bound model,
+   * until refreshTable() is called.
+   */
+  public void refreshTable(List<Transaction> transactions);
+
+  public void highlightRows(BitSet rowIndexes);
+
+  /**
+   * @return the rows of the table, used to map a row to its transaction
+   */
+  public TransactionTableModel getTableModel();
+
+  /**
+   * Tells the user something, e.g. that no filter is set.
+   */
+  public void showMessage(String message);
+
+}
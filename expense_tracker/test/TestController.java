@@ -0,0 +1,130 @@
+// package test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.BitSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.FutureTask;
+
+import javax.swing.SwingUtilities;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import controller.CsvImporter;
+import controller.ExpenseTrackerController;
+import controller.LoadGenerator;
+import model.ExpenseTrackerModel;
+import model.Transaction;
+import model.Filter.CategoryFilter;
+import view.HeadlessView;
+
+public class TestController {
+
+    private ExpenseTrackerModel model;
+    private HeadlessView view;
+    private ExpenseTrackerController controller;
+
+    @Before
+    public void setup() {
+        // No window is created, so this runs without a display
+        model = new ExpenseTrackerModel();
+        view = new HeadlessView();
+        controller = new ExpenseTrackerController(model, view);
+    }
+
+    @Test
+    public void testHeadlessView() throws Exception {
+        assertTrue(controller.addTransaction(50, "food"));
+        assertTrue(controller.addTransaction(20, "bills"));
+        assertTrue(controller.addTransaction(10, "food"));
+        assertEquals(4, view.getTableModel().getRowCount());
+
+        // Messages are recorded instead of shown in a dialog
+        controller.applyFilter();
+        assertEquals(1, view.getMessageCount());
+        assertEquals("No filter applied", view.getMessages().get(0));
+
+        controller.setFilter(new CategoryFilter("food"));
+        controller.applyFilter();
+        // The rows are highlighted on the event dispatch thread
+        SwingUtilities.invokeAndWait(() -> { });
+        BitSet expected = new BitSet();
+        expected.set(0);
+        expected.set(2);
+        assertEquals(expected, view.getHighlightedRows());
+        assertEquals(1, view.getHighlightCount());
+
+        // Rows are mapped to transactions through the table model of the view
+        controller.undoTransaction(1);
+        assertEquals(2, model.getTransactionCount());
+        assertEquals(3, view.getTableModel().getRowCount());
+        assertEquals(60, model.getTotalAmount(), 0.01);
+    }
+
+    @Test
+    public void testLoadGenerator() throws Exception {
+        LoadGenerator.Result result = new LoadGenerator(controller, 4, 60, 30, 10).run(300);
+        SwingUtilities.invokeAndWait(() -> { });
+        assertTrue(result.getAddCount() > 0);
+        assertTrue(result.getFilterCount() > 0);
+        assertTrue(result.getUndoCount() > 0);
+        assertTrue(result.getOperationsPerSecond() > 0);
+        assertEquals(result.getFilterCount(), view.getHighlightCount());
+
+        // The changes were made one at a time, so the model and the table still agree
+        int count = model.getTransactionCount();
+        assertTrue(count <= result.getAddCount());
+        assertEquals(count + 1, view.getTableModel().getRowCount());
+        double total = 0;
+        for (Transaction transaction : model.getTransactions()) {
+            total += transaction.getAmount();
+        }
+        assertEquals(total, model.getTotalAmount(), 0.01);
+        for (int row = 0; row < count; row++) {
+            assertEquals(model.getId(row), view.getTableModel().getTransactionId(row));
+        }
+    }
+
+    @Test
+    public void testAddDuringImport() throws Exception {
+        Path file = Files.createTempFile("expense-tracker", ".csv");
+        try {
+            Files.write(file, "10,food\n20,bills\n30,food\n".getBytes(StandardCharsets.UTF_8));
+            // Keeps the event dispatch thread busy, the import waits for it to add its chunk
+            CountDownLatch busy = new CountDownLatch(1);
+            SwingUtilities.invokeLater(() -> {
+                try {
+                    busy.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            FutureTask<CsvImporter.Result> importing = new FutureTask<>(() -> controller.importTransactions(file));
+            new Thread(importing).start();
+
+            // The import does not hold the controller while it reads, so this add does not wait for it
+            assertTrue(controller.addTransaction(5, "travel"));
+            assertEquals(1, model.getTransactionCount());
+            busy.countDown();
+            assertEquals(3, importing.get().getImportedCount());
+            assertEquals(4, model.getTransactionCount());
+            assertEquals(5, view.getTableModel().getRowCount());
+
+            // The import is undone on its own
+            assertTrue(controller.undo());
+            assertEquals(1, model.getTransactionCount());
+            assertEquals(5, model.getTotalAmount(), 0.01);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testLoadGeneratorWithoutWeights() {
+        new LoadGenerator(controller, 1, 0, 0, 0);
+    }
+}
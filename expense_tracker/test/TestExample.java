@@ -12,6 +12,7 @@ import java.util.List;
 
 import javax.swing.JOptionPane;
 import javax.swing.JTable;
+import javax.swing.SwingUtilities;
 import javax.swing.table.DefaultTableCellRenderer;
 import javax.swing.table.TableCellRenderer;
 
@@ -196,7 +197,7 @@ public class TestExample {
     }
 
     @Test
-    public void testFilterByAmount() {
+    public void testFilterByAmount() throws Exception {
         // Pre-condition: List of transactions is empty
         assertEquals(0, model.getTransactions().size());
 
@@ -231,6 +232,8 @@ public class TestExample {
         AmountFilter amountFilter = new AmountFilter(50);
         controller.setFilter(amountFilter);
         controller.applyFilter();
+        // The rows are highlighted on the event dispatch thread
+        SwingUtilities.invokeAndWait(() -> { });
 
         // Get the filtered transaction list after filter
         List<Transaction> filteredTransactions = amountFilter.filter(model.getTransactions());
@@ -258,7 +261,7 @@ public class TestExample {
     }
 
     @Test
-    public void testFilterByCategory() {
+    public void testFilterByCategory() throws Exception {
         // Pre-condition: List of transactions is empty
         assertEquals(0, model.getTransactions().size());
 
@@ -293,6 +296,8 @@ public class TestExample {
         CategoryFilter categoryFilter = new CategoryFilter("bills");
         controller.setFilter(categoryFilter);
         controller.applyFilter();
+        // The rows are highlighted on the event dispatch thread
+        SwingUtilities.invokeAndWait(() -> { });
 
         // Get the filtered transaction list after filter
         List<Transaction> filteredTransactions = categoryFilter.filter(model.getTransactions());
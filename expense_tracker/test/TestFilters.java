@@ -0,0 +1,192 @@
+// package test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import model.ExpenseTrackerModel;
+import model.TransactionBatch;
+import model.Transaction;
+import model.Filter.AmountFilter;
+import model.Filter.AndFilter;
+import model.Filter.CategoryFilter;
+import model.Filter.DateRangeFilter;
+import model.Filter.NotFilter;
+import model.Filter.OrFilter;
+import model.Filter.ParallelFilter;
+import model.Filter.TransactionFilter;
+import model.Filter.TransactionRowFilter;
+
+public class TestFilters {
+
+    private static final String[] CATEGORIES = {"food", "travel", "bills", "entertainment", "other"};
+
+    private ExpenseTrackerModel model;
+
+    @Before
+    public void setup() {
+        model = new ExpenseTrackerModel();
+        for (int i = 0; i < 2000; i++) {
+            model.addTransaction(new Transaction(1 + (i * 37) % 1000, CATEGORIES[i % CATEGORIES.length]));
+        }
+    }
+
+    // The rows found through the indexes must match a plain scan of the transactions
+    private void checkFilter(TransactionRowFilter filter) {
+        List<Transaction> transactions = model.getTransactions();
+        List<Transaction> expected = filter.filter(transactions);
+        BitSet rows = filter.filterRows(model);
+        assertEquals(expected.size(), rows.cardinality());
+        int i = 0;
+        for (int row = rows.nextSetBit(0); row >= 0; row = rows.nextSetBit(row + 1)) {
+            assertEquals(expected.get(i++), transactions.get(row));
+        }
+        assertEquals(expected, filter.filter(model));
+    }
+
+    @Test
+    public void testAndFilter() {
+        AndFilter filter = new AndFilter(new CategoryFilter("food"), new AmountFilter(100, 1000));
+        checkFilter(filter);
+
+        // A selective amount range is answered from its index before the category
+        checkFilter(new AndFilter(new CategoryFilter("food"), new AmountFilter(500, 510)));
+        checkFilter(new AndFilter(filter, new NotFilter(new AmountFilter(200, 300))));
+    }
+
+    @Test
+    public void testOrFilter() {
+        checkFilter(new OrFilter(new CategoryFilter("bills"), new AmountFilter(1, 50)));
+        checkFilter(new OrFilter(new CategoryFilter("bills"), new CategoryFilter("travel")));
+    }
+
+    @Test
+    public void testNotFilter() {
+        checkFilter(new NotFilter(new CategoryFilter("food")));
+        checkFilter(new NotFilter(new OrFilter(new CategoryFilter("food"), new AmountFilter(1, 500))));
+    }
+
+    @Test
+    public void testPlainFilterIsAdapted() {
+        // A filter that only implements the list contract
+        TransactionFilter large = new AmountFilter(900, 1000)::filter;
+        checkFilter(new AndFilter(large, new CategoryFilter("other")));
+        assertEquals(new AmountFilter(900, 1000).filterRows(model), TransactionRowFilter.of(large).filterRows(model));
+    }
+
+    @Test
+    public void testParallelFilter() {
+        // Enough rows for several segments, the last one partly filled
+        TransactionBatch batch = new TransactionBatch(50000);
+        for (int i = 0; i < 50000; i++) {
+            batch.add(1 + (i * 37) % 1000, CATEGORIES[i % CATEGORIES.length], i);
+        }
+        model.addTransactions(batch);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            TransactionRowFilter[] filters = {
+                new CategoryFilter("food"),
+                new AmountFilter(1, 500),
+                new NotFilter(new CategoryFilter("travel")),
+                TransactionRowFilter.of(new AmountFilter(900, 1000)::filter)
+            };
+            for (TransactionRowFilter filter : filters) {
+                ParallelFilter parallel = new ParallelFilter(filter, pool, 0);
+                assertEquals(filter.filterRows(model), parallel.filterRows(model));
+                assertEquals(filter.filter(model.getTransactions()), parallel.filter(model.getTransactions()));
+            }
+            // A selective filter is still answered from its index
+            ParallelFilter selective = new ParallelFilter(new AmountFilter(500, 500), pool, 0);
+            assertEquals(new AmountFilter(500, 500).filterRows(model), selective.filterRows(model));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testCancelledScans() {
+        TransactionBatch batch = new TransactionBatch(50000);
+        for (int i = 0; i < 50000; i++) {
+            batch.add(1 + (i * 37) % 1000, CATEGORIES[i % CATEGORIES.length], i);
+        }
+        model.addTransactions(batch);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        // The QueryExecutor cancels a query by interrupting its thread, the scans stop with an exception
+        TransactionRowFilter[] scans = {
+            new ParallelFilter(new NotFilter(new CategoryFilter("travel")), pool, 0),
+            new AndFilter(new CategoryFilter("food"), new AmountFilter(1, 900)),
+            // Matches without an ID are found in a pass over the transactions
+            TransactionRowFilter.of(transactions -> {
+                List<Transaction> matches = new ArrayList<>();
+                for (Transaction t : new AmountFilter(900, 1000).filter(transactions)) {
+                    matches.add(t.withoutId());
+                }
+                return matches;
+            })
+        };
+        try {
+            for (TransactionRowFilter scan : scans) {
+                Thread.currentThread().interrupt();
+                try {
+                    scan.filterRows(model);
+                    fail("The scan should have been cancelled");
+                } catch (CancellationException e) {
+                    // Expected
+                } finally {
+                    Thread.interrupted();
+                }
+                // Without the interrupt the same scan runs to the end
+                assertTrue(scan.filterRows(model).cardinality() > 0);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testDateRangeFilter() {
+        // A year of transactions, one every six hours, the second half imported in reverse order
+        model.clearTransactions();
+        long start = Transaction.parseTimestamp("01-01-2022 00:00");
+        long step = 6 * 3600 * 1000L;
+        TransactionBatch history = new TransactionBatch(1460);
+        for (int i = 1459; i >= 730; i--) {
+            history.add(10, "bills", start + i * step);
+        }
+        for (int i = 0; i < 730; i++) {
+            model.addTransaction(new Transaction(5, "food", start + i * step));
+        }
+        model.addTransactions(history);
+        model.addTransaction(new Transaction(7, "travel", start + 100 * step + 1));
+        model.removeTransaction(model.getTransaction(3));
+
+        DateRangeFilter march = DateRangeFilter.month(YearMonth.of(2022, 3));
+        assertEquals(31 * 4, march.estimateRows(model));
+        checkFilter(march);
+        checkFilter(DateRangeFilter.month(YearMonth.of(2023, 2)));
+        checkFilter(DateRangeFilter.between("01-01-2022", "01-01-2022"));
+        assertEquals(3, DateRangeFilter.between("01-01-2022", "01-01-2022").filterRows(model).cardinality());
+        checkFilter(DateRangeFilter.between("25-01-2022 00:00", "25-01-2022 00:00"));
+        checkFilter(new AndFilter(march, new CategoryFilter("food")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidDateRangeFilter() {
+        DateRangeFilter.between("31-12-2023", "01-01-2023");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEmptyAndFilter() {
+        new AndFilter();
+    }
+
+}
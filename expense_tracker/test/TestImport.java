@@ -0,0 +1,118 @@
+// package test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import controller.CsvImporter;
+import controller.InputValidation;
+import model.ExpenseTrackerModel;
+import model.ExpenseTrackerModelListener;
+import model.Transaction;
+import model.TransactionBatch;
+
+public class TestImport {
+
+    private Path file;
+
+    @Before
+    public void setup() throws IOException {
+        file = Files.createTempFile("expense-tracker", ".csv");
+    }
+
+    @After
+    public void cleanup() throws IOException {
+        Files.delete(file);
+    }
+
+    @Test
+    public void testImportInChunks() throws IOException {
+        StringBuilder csv = new StringBuilder("Amount,Category,Date\r\n");
+        for (int i = 0; i < 10000; i++) {
+            csv.append(1 + i % 100).append(",").append(i % 2 == 0 ? "food" : "\"bills\"").append("\r\n");
+        }
+        csv.append("2000,food\n");          // invalid amount
+        csv.append("abc,food\n");           // not a number
+        csv.append("5,food,01-02-2023 10:30\n");
+        csv.append("5,rent");               // invalid category, no line break at the end
+        Files.write(file, csv.toString().getBytes(StandardCharsets.UTF_8));
+
+        ExpenseTrackerModel model = new ExpenseTrackerModel();
+        AtomicInteger events = new AtomicInteger();
+        model.addListener(new ExpenseTrackerModelListener() {
+            public void transactionsAdded(int firstRow, int lastRow) {
+                events.incrementAndGet();
+            }
+            public void transactionRemoved(int row) {
+            }
+            public void transactionsCleared() {
+            }
+        });
+        // A small chunk size spreads the file over many chunks and workers
+        CsvImporter.Result result = new CsvImporter(model, 4, 1024).importFile(file);
+
+        assertEquals(10001, result.getImportedCount());
+        assertEquals(3, result.getRejectedCount());
+        assertEquals(10002, result.getFirstRejectedLine());
+        assertEquals(10001, model.getTransactionCount());
+        // The rows keep the order of the file
+        for (int row = 0; row < 10000; row++) {
+            assertEquals(1 + row % 100, model.getAmount(row), 0.01);
+            assertEquals(row % 2 == 0 ? "food" : "bills", model.getCategory(row));
+        }
+        assertEquals("01-02-2023 10:30", model.getTimestamp(10000));
+        assertEquals(5001, model.getCategoryTransactionCount("food"));
+        // One update per chunk, not per line
+        assertTrue(events.get() < 10001 / 50);
+    }
+
+    @Test
+    public void testNonFiniteAmounts() throws IOException {
+        Files.write(file, "Amount,Category\nNaN,food\nInfinity,food\n-Infinity,bills\n1e400,food\n5,food\n"
+                .getBytes(StandardCharsets.UTF_8));
+        ExpenseTrackerModel model = new ExpenseTrackerModel();
+        CsvImporter.Result result = new CsvImporter(model, 2, 16).importFile(file);
+        assertEquals(1, result.getImportedCount());
+        assertEquals(4, result.getRejectedCount());
+        assertEquals(2, result.getFirstRejectedLine());
+        assertEquals(5.0, model.getTotalAmount(), 0.01);
+        assertArrayEquals(new int[]{0}, model.getRowsForAmountRange(0, 1000));
+
+        assertFalse(InputValidation.isValidAmount(Double.NaN));
+        assertFalse(InputValidation.isValidAmount(Double.POSITIVE_INFINITY));
+        try {
+            new Transaction(Double.NaN, "food");
+            fail("NaN must be rejected");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            new TransactionBatch(1).add(Double.NaN, "food", 1000);
+            fail("NaN must be rejected");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testLineLongerThanChunk() throws IOException {
+        String padding = new String(new char[100]).replace('\0', ' ');
+        Files.write(file, ("10," + padding + "food\n20,travel\n").getBytes(StandardCharsets.UTF_8));
+        ExpenseTrackerModel model = new ExpenseTrackerModel();
+        CsvImporter.Result result = new CsvImporter(model, 2, 16).importFile(file);
+        assertEquals(2, result.getImportedCount());
+        assertEquals(30.0, model.getTotalAmount(), 0.01);
+    }
+
+}
@@ -0,0 +1,103 @@
+// package test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+
+import model.ExpenseTrackerModel;
+import model.Transaction;
+import model.Filter.CategoryFilter;
+import model.Metrics.Counter;
+import model.Metrics.LatencyHistogram;
+import model.Metrics.MetricsRegistry;
+
+public class TestMetrics {
+
+    @Test
+    public void testLatencyHistogram() {
+        MetricsRegistry registry = new MetricsRegistry(true);
+        LatencyHistogram histogram = registry.histogram("test");
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000L);
+        }
+        assertEquals(1000, histogram.getCount());
+        assertEquals(1000000, histogram.getMaxNanos());
+        assertEquals(500500, histogram.getMeanNanos(), 0.001);
+
+        // Percentiles are within 25% of the exact values
+        long median = histogram.getPercentileNanos(50);
+        assertTrue(median >= 500000 && median <= 625000);
+        long p99 = histogram.getPercentileNanos(99);
+        assertTrue(p99 >= 990000 && p99 <= 1000000);
+        assertEquals(1000000, histogram.getPercentileNanos(100));
+
+        registry.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getPercentileNanos(50));
+    }
+
+    @Test
+    public void testDisabledRegistry() {
+        MetricsRegistry registry = new MetricsRegistry(false);
+        LatencyHistogram histogram = registry.histogram("test");
+        Counter counter = registry.counter("count");
+
+        // Nothing is measured or counted, not even the clock is read
+        assertEquals(0, histogram.start());
+        histogram.stop(histogram.start());
+        histogram.record(1000);
+        counter.increment();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, counter.getCount());
+
+        registry.setEnabled(true);
+        histogram.stop(histogram.start());
+        counter.add(3);
+        assertEquals(1, histogram.getCount());
+        assertEquals(3, counter.getCount());
+    }
+
+    @Test
+    public void testModelAndFiltersAreMeasured() {
+        // The metrics are created when the classes are loaded
+        ExpenseTrackerModel model = new ExpenseTrackerModel();
+        CategoryFilter filter = new CategoryFilter("food");
+        MetricsRegistry registry = MetricsRegistry.getDefault();
+        long adds = registry.getCount("model.add");
+        long addedRows = registry.getCount("model.addedRows");
+        long filters = registry.getCount("filter.category");
+        model.addTransaction(new Transaction(50, "food"));
+        model.addTransaction(new Transaction(20, "bills"));
+        filter.filterRows(model);
+
+        assertEquals(adds + 2, registry.getCount("model.add"));
+        assertEquals(addedRows + 2, registry.getCount("model.addedRows"));
+        assertEquals(filters + 1, registry.getCount("filter.category"));
+        assertTrue(registry.getSummary().contains("model.add count="));
+    }
+
+    @Test
+    public void testMBean() throws Exception {
+        MetricsRegistry registry = new MetricsRegistry(true);
+        registry.histogram("test").record(2000000);
+        String objectName = "expensetracker:type=Metrics,name=test";
+        registry.registerMBean(objectName);
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(objectName);
+        try {
+            assertEquals(true, server.getAttribute(name, "Enabled"));
+            assertEquals(1L, server.invoke(name, "getCount", new Object[] {"test"},
+                    new String[] {String.class.getName()}));
+            double p50 = (Double) server.invoke(name, "getPercentileMillis", new Object[] {"test", 50.0},
+                    new String[] {String.class.getName(), double.class.getName()});
+            assertEquals(2.0, p50, 0.001);
+        } finally {
+            server.unregisterMBean(name);
+        }
+    }
+}
@@ -0,0 +1,759 @@
+// package test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+import javax.swing.JTable;
+import javax.swing.SwingUtilities;
+import javax.swing.event.TableModelEvent;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import controller.InputValidation;
+import controller.QueryExecutor;
+import model.CategoryRegistry;
+import model.ConcurrentExpenseTrackerModel;
+import model.ExpenseTrackerModel;
+import model.Transaction;
+import model.TransactionBatch;
+import model.TransactionHistory;
+import model.TransactionSnapshot;
+import model.TransactionStore;
+import model.Filter.AmountFilter;
+import model.Filter.CategoryFilter;
+import model.Filter.NotFilter;
+import model.Filter.OrFilter;
+import view.HighlightRenderer;
+import view.TransactionTableModel;
+
+public class TestModel {
+
+    private ExpenseTrackerModel model;
+
+    @Before
+    public void setup() {
+        model = new ExpenseTrackerModel();
+    }
+
+    @Test
+    public void testColumnarStorage() {
+        // Pre-condition: List of transactions is empty
+        assertEquals(0, model.getTransactionCount());
+
+        Transaction food = new Transaction(50.0, "food");
+        Transaction bills = new Transaction(20.0, "bills");
+        model.addTransaction(food);
+        model.addTransaction(bills);
+
+        // The model hands out a read-only store, each row is a view of the columns
+        List<Transaction> transactions = model.getTransactions();
+        assertTrue(transactions instanceof TransactionStore);
+        assertEquals(2, transactions.size());
+        assertEquals(food, transactions.get(0).withoutId());
+        assertEquals(bills, transactions.get(1).withoutId());
+        assertEquals(food.getTimestamp(), transactions.get(0).getTimestamp());
+        assertEquals(70.0, model.getTotalAmount(), 0.01);
+
+        // The snapshot is shared until the model changes
+        assertSame(transactions, model.getTransactions());
+
+        // Removing a view removes the stored row
+        model.removeTransaction(transactions.get(0));
+        assertEquals(1, model.getTransactionCount());
+        assertEquals(bills, model.getTransactions().get(0).withoutId());
+        assertNotSame(transactions, model.getTransactions());
+        assertEquals(2, transactions.size());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testTransactionsAreReadOnly() {
+        model.getTransactions().add(new Transaction(50.0, "food"));
+    }
+
+    @Test
+    public void testFiltersScanStore() {
+        model.addTransaction(new Transaction(50.0, "food"));
+        model.addTransaction(new Transaction(20.0, "Bills"));
+        model.addTransaction(new Transaction(50.0, "bills"));
+
+        List<Transaction> byAmount = new AmountFilter(50.0).filter(model.getTransactions());
+        assertEquals(2, byAmount.size());
+        assertEquals("food", byAmount.get(0).getCategory());
+        assertEquals("bills", byAmount.get(1).getCategory());
+
+        // Category matching is case insensitive
+        List<Transaction> byCategory = new CategoryFilter("bills").filter(model.getTransactions());
+        assertEquals(2, byCategory.size());
+        assertEquals(20.0, byCategory.get(0).getAmount(), 0.01);
+        assertEquals(50.0, byCategory.get(1).getAmount(), 0.01);
+    }
+
+    @Test
+    public void testCategoryIndex() {
+        Transaction first = new Transaction(10.0, "food");
+        model.addTransaction(first);
+        model.addTransaction(new Transaction(20.0, "bills"));
+        model.addTransaction(new Transaction(30.0, "Food"));
+        model.addTransaction(new Transaction(40.0, "food"));
+
+        // Both spellings are returned in row order
+        assertArrayEquals(new int[]{0, 2, 3}, model.getRowsForCategory("food"));
+        assertArrayEquals(new int[]{1}, model.getRowsForCategory("bills"));
+        assertArrayEquals(new int[0], model.getRowsForCategory("travel"));
+
+        // Removing a row shifts the rows after it
+        model.removeTransaction(first);
+        assertArrayEquals(new int[]{1, 2}, model.getRowsForCategory("food"));
+        assertArrayEquals(new int[]{0}, model.getRowsForCategory("bills"));
+
+        BitSet foodRows = new CategoryFilter("food").filterRows(model);
+        assertEquals(2, foodRows.cardinality());
+        assertTrue(foodRows.get(1) && foodRows.get(2));
+
+        List<Transaction> food = new CategoryFilter("food").filter(model);
+        assertEquals(2, food.size());
+        assertEquals(30.0, food.get(0).getAmount(), 0.01);
+        assertEquals(40.0, food.get(1).getAmount(), 0.01);
+
+        model.clearTransactions();
+        assertArrayEquals(new int[0], model.getRowsForCategory("food"));
+    }
+
+    @Test
+    public void testAmountIndex() {
+        // Enough transactions to merge the pending buffer of the index several times
+        for (int i = 0; i < 3000; i++) {
+            model.addTransaction(new Transaction(1 + (i * 7) % 1000, "food"));
+        }
+
+        int[] rows = model.getRowsForAmountRange(200, 1000);
+        int expected = 0;
+        for (int row = 0; row < model.getTransactionCount(); row++) {
+            double amount = model.getTransaction(row).getAmount();
+            if (amount >= 200 && amount <= 1000) {
+                assertEquals(row, rows[expected++]);
+            }
+        }
+        assertEquals(expected, rows.length);
+
+        // Removing a row shifts the rows after it
+        model.removeTransaction(model.getTransaction(0));
+        assertArrayEquals(new int[]{856, 1856, 2856}, model.getRowsForAmountRange(1000, 1000));
+
+        assertEquals(3, new AmountFilter(1000).filter(model).size());
+        assertEquals(6, AmountFilter.withTolerance(999.5, 0.5).filter(model).size());
+        assertEquals(new AmountFilter(200, 1000).filter(model.getTransactions()),
+                new AmountFilter(200, 1000).filter(model));
+    }
+
+    @Test
+    public void testSortedRuns() {
+        // Single adds and batches end up in sorted runs of different sizes, the
+        // times repeat every round so most of them are not added in order
+        Random random = new Random(42);
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < 3000; i++) {
+                model.addTransaction(new Transaction(1 + random.nextInt(1000), "food", i));
+            }
+            TransactionBatch batch = new TransactionBatch(2000);
+            for (int i = 0; i < 2000; i++) {
+                batch.add(1 + random.nextInt(1000), "bills", i);
+            }
+            model.addTransactions(batch);
+        }
+        model.removeTransactionAt(100);
+        model.updateTransactionAt(200, 999.5, "food");
+
+        for (double min = 0; min < 1000; min += 97) {
+            int expected = 0;
+            for (int row = 0; row < model.getTransactionCount(); row++) {
+                double amount = model.getAmount(row);
+                if (amount >= min && amount <= min + 150) {
+                    expected++;
+                }
+            }
+            assertEquals(expected, model.getRowsForAmountRange(min, min + 150).length);
+            assertEquals(expected, model.countRowsForAmountRange(min, min + 150));
+        }
+        for (long from = 0; from < 3000; from += 450) {
+            int expected = 0;
+            for (int row = 0; row < model.getTransactionCount(); row++) {
+                long time = model.getCreatedAt(row);
+                if (time >= from && time <= from + 300) {
+                    expected++;
+                }
+            }
+            assertEquals(expected, model.getRowsForTimeRange(from, from + 300).length);
+            assertEquals(expected, model.countRowsForTimeRange(from, from + 300));
+        }
+        // The snapshot orders every row by amount
+        int[] order = model.snapshot().getAmountOrder();
+        assertEquals(model.getTransactionCount(), order.length);
+        for (int i = 1; i < order.length; i++) {
+            assertTrue(model.getAmount(order[i - 1]) <= model.getAmount(order[i]));
+        }
+    }
+
+    @Test
+    public void testRemovalsKeepIndexes() {
+        // Removed rows leave marked slots behind until the store is compacted,
+        // the rows, IDs and index queries must match a plain list throughout
+        TransactionHistory history = new TransactionHistory(model);
+        List<Transaction> expected = new ArrayList<>();
+        String[] categories = {"food", "bills", "travel"};
+        Random random = new Random(7);
+        for (int i = 0; i < 3000; i++) {
+            long id = model.addTransaction(new Transaction(1 + random.nextInt(100), categories[i % 3], i));
+            expected.add(model.getTransactionById(id));
+        }
+        for (int step = 0; step < 4000; step++) {
+            int pick = random.nextInt(10);
+            if (pick < 5 && !expected.isEmpty()) {
+                int row = random.nextInt(expected.size());
+                Transaction removed = expected.remove(row);
+                if (pick == 0) {
+                    assertTrue(model.removeTransactionById(removed.getId()));
+                } else {
+                    model.removeTransactionAt(row);
+                }
+                int put = random.nextInt(40);
+                if (put < 8) {
+                    // Put back where it was, with its ID, into the slot it was removed from
+                    if (put < 4) {
+                        assertTrue(history.undo());
+                    } else {
+                        model.insertTransactionAt(row, removed);
+                    }
+                    expected.add(row, removed);
+                } else if (put < 12) {
+                    // Another transaction takes the removed slot, with other values
+                    model.insertTransactionAt(row, new Transaction(1 + random.nextInt(100),
+                            categories[random.nextInt(3)], random.nextInt(3000)));
+                    expected.add(row, model.getTransaction(row));
+                } else if (put == 12) {
+                    // Without a removed slot before the row the store is compacted to make room
+                    row = random.nextInt(expected.size() + 1);
+                    model.insertTransactionAt(row, new Transaction(50, "bills", step));
+                    expected.add(row, model.getTransaction(row));
+                }
+            } else if (pick < 7) {
+                long id = model.addTransaction(new Transaction(1 + random.nextInt(100), categories[step % 3],
+                        random.nextInt(3000)));
+                expected.add(model.getTransactionById(id));
+            } else if (pick < 8) {
+                // Undoing a batch drops its rows from the end of the store
+                TransactionBatch batch = new TransactionBatch(80);
+                for (int i = 0; i < 80; i++) {
+                    batch.add(1 + random.nextInt(100), "travel", i);
+                }
+                model.addTransactions(batch);
+                assertTrue(history.undo());
+            } else if (!expected.isEmpty()) {
+                int row = random.nextInt(expected.size());
+                model.updateTransactionAt(row, 1 + random.nextInt(100), categories[random.nextInt(3)]);
+                expected.set(row, model.getTransaction(row));
+            }
+            if (step % 200 == 0 || step == 3999) {
+                assertMatches(expected);
+            }
+        }
+        // A copy for a snapshot keeps the rows of the time it was taken, and
+        // ordering it by amount does not touch the index of the model
+        Supplier<TransactionBatch> copy = model.copyForSnapshot();
+        model.removeTransactionAt(0);
+        model.addTransaction(new Transaction(1000, "food", 0));
+        TransactionBatch snapshot = copy.get();
+        assertEquals(expected.size(), snapshot.size());
+        assertEquals(expected.get(0).getAmount(), snapshot.getAmount(0), 0);
+        int[] order = snapshot.getAmountOrder();
+        for (int i = 1; i < order.length; i++) {
+            assertTrue(snapshot.getAmount(order[i - 1]) <= snapshot.getAmount(order[i]));
+        }
+        expected.remove(0);
+        expected.add(model.getTransaction(model.getTransactionCount() - 1));
+        assertMatches(expected);
+    }
+
+    private void assertMatches(List<Transaction> expected) {
+        assertEquals(expected.size(), model.getTransactionCount());
+        List<Integer> food = new ArrayList<>();
+        List<Integer> cheap = new ArrayList<>();
+        List<Integer> early = new ArrayList<>();
+        double total = 0;
+        for (int row = 0; row < expected.size(); row++) {
+            Transaction t = expected.get(row);
+            assertEquals(t, model.getTransaction(row));
+            assertEquals(row, model.getRowForId(t.getId()));
+            if (t.getCategory().equals("food")) {
+                food.add(row);
+            }
+            if (t.getAmount() <= 30) {
+                cheap.add(row);
+            }
+            if (t.getCreatedAt() <= 1000) {
+                early.add(row);
+            }
+            total += t.getAmount();
+        }
+        assertArrayEquals(food.stream().mapToInt(Integer::intValue).toArray(), model.getRowsForCategory("food"));
+        assertArrayEquals(cheap.stream().mapToInt(Integer::intValue).toArray(), model.getRowsForAmountRange(0, 30));
+        assertEquals(cheap.size(), model.countRowsForAmountRange(0, 30));
+        assertArrayEquals(early.stream().mapToInt(Integer::intValue).toArray(), model.getRowsForTimeRange(0, 1000));
+        assertEquals(early.size(), model.countRowsForTimeRange(0, 1000));
+        assertEquals(total, model.getTotalAmount(), 0.01);
+        assertEquals(expected, model.getTransactions());
+        assertEquals(expected.size(), model.snapshot().getAmountOrder().length);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidAmountRange() {
+        new AmountFilter(1000, 200);
+    }
+
+    @Test
+    public void testTableModelFollowsModel() {
+        TransactionTableModel tableModel = new TransactionTableModel();
+        tableModel.setModel(model);
+        List<TableModelEvent> events = new ArrayList<>();
+        tableModel.addTableModelListener(events::add);
+
+        // Only the total row is shown for an empty model
+        assertEquals(1, tableModel.getRowCount());
+        assertEquals("Total", tableModel.getValueAt(0, 0));
+
+        Transaction food = new Transaction(50.0, "food");
+        model.addTransaction(food);
+        model.addTransaction(new Transaction(20.0, "bills"));
+        assertEquals(3, tableModel.getRowCount());
+        assertEquals(2, tableModel.getValueAt(1, 0));
+        assertEquals(20.0, tableModel.getValueAt(1, 1));
+        assertEquals("bills", tableModel.getValueAt(1, 2));
+        assertEquals(70.0, (Double) tableModel.getValueAt(2, 3), 0.01);
+
+        // One row inserted per add, followed by an update of the total row
+        assertEquals(TableModelEvent.INSERT, events.get(2).getType());
+        assertEquals(1, events.get(2).getFirstRow());
+        assertEquals(1, events.get(2).getLastRow());
+
+        events.clear();
+        model.removeTransaction(food);
+        assertEquals(TableModelEvent.DELETE, events.get(0).getType());
+        assertEquals(0, events.get(0).getFirstRow());
+        assertEquals(2, tableModel.getRowCount());
+        assertEquals(1, tableModel.getValueAt(0, 0));
+        assertEquals(20.0, (Double) tableModel.getValueAt(1, 3), 0.01);
+    }
+
+    @Test
+    public void testAggregates() {
+        Transaction food = new Transaction(50.0, "food");
+        model.addTransaction(food);
+        model.addTransaction(new Transaction(20.0, "Bills"));
+        model.addTransaction(new Transaction(30.0, "bills"));
+
+        assertEquals(100.0, model.getTotalAmount(), 0.001);
+        assertEquals(100.0 / 3, model.getAverageAmount(), 0.001);
+        assertEquals(50.0, model.getCategoryTotal("bills"), 0.001);
+        assertEquals(2, model.getCategoryTransactionCount("BILLS"));
+        assertEquals(25.0, model.getCategoryAverage("bills"), 0.001);
+
+        model.removeTransaction(food);
+        assertEquals(0.0, model.getCategoryTotal("food"), 0.0);
+        assertEquals(0, model.getCategoryTransactionCount("food"));
+        assertEquals(50.0, model.getTotalAmount(), 0.001);
+
+        model.clearTransactions();
+        assertEquals(0.0, model.getTotalAmount(), 0.0);
+        assertEquals(0.0, model.getCategoryAverage("bills"), 0.0);
+    }
+
+    @Test
+    public void testCompensatedTotal() {
+        // 0.1 has no exact double representation, a naive sum drifts away from the exact total
+        for (int i = 0; i < 100000; i++) {
+            model.addTransaction(new Transaction(0.1, "food"));
+        }
+        Transaction large = new Transaction(999.99, "bills");
+        model.addTransaction(large);
+        model.removeTransaction(large);
+        assertEquals(10000.0, model.getTotalAmount(), 1e-9);
+    }
+
+    @Test
+    public void testHighlightRenderer() {
+        TransactionTableModel tableModel = new TransactionTableModel();
+        tableModel.setModel(model);
+        model.addTransaction(new Transaction(50.0, "food"));
+        model.addTransaction(new Transaction(20.0, "bills"));
+        JTable table = new JTable(tableModel);
+        HighlightRenderer renderer = new HighlightRenderer();
+        table.setDefaultRenderer(Object.class, renderer);
+
+        BitSet rows = new BitSet();
+        rows.set(1);
+        renderer.setHighlightedRows(rows);
+        assertEquals(HighlightRenderer.HIGHLIGHT_COLOR, table.prepareRenderer(renderer, 1, 0).getBackground());
+        assertEquals(table.getBackground(), table.prepareRenderer(renderer, 0, 0).getBackground());
+
+        // Swapping the mask does not need a new renderer
+        renderer.setHighlightedRows(new BitSet());
+        assertEquals(table.getBackground(), table.prepareRenderer(renderer, 1, 0).getBackground());
+    }
+
+    @Test
+    public void testConcurrentModel() throws InterruptedException {
+        ConcurrentExpenseTrackerModel concurrent = new ConcurrentExpenseTrackerModel();
+        Thread[] producers = new Thread[4];
+        for (int p = 0; p < producers.length; p++) {
+            String category = p % 2 == 0 ? "food" : "travel";
+            producers[p] = new Thread(() -> {
+                for (int i = 0; i < 50000; i++) {
+                    concurrent.addTransaction(new Transaction(1 + i % 10, category, i));
+                }
+            });
+            producers[p].start();
+        }
+        // Snapshots taken while the producers run stay unchanged
+        TransactionSnapshot early = concurrent.snapshot();
+        int earlySize = early.size();
+        double earlyTotal = early.getTotalAmount();
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        assertEquals(earlySize, early.size());
+        assertEquals(earlyTotal, early.getTotalAmount(), 0.01);
+
+        TransactionSnapshot all = concurrent.snapshot();
+        assertEquals(200000, all.size());
+        assertEquals(4 * 5000 * 55, all.getTotalAmount(), 0.01);
+
+        // A removal creates a new version, older snapshots still see the row
+        Transaction removed = all.get(10);
+        concurrent.removeTransaction(removed);
+        TransactionSnapshot afterRemove = concurrent.snapshot();
+        assertEquals(all.getVersion() + 1, afterRemove.getVersion());
+        assertEquals(199999, afterRemove.size());
+        assertEquals(all.get(11), afterRemove.get(10));
+        assertEquals(200000, all.size());
+
+        ExpenseTrackerModel model = new ExpenseTrackerModel();
+        model.addTransactions(afterRemove.toBatch());
+        assertEquals(afterRemove, withoutIds(model.getTransactions()));
+
+        concurrent.clearTransactions();
+        assertEquals(0, concurrent.getTransactionCount());
+        assertEquals(199999, afterRemove.size());
+    }
+
+    @Test
+    public void testTimestampFormatting() throws InterruptedException {
+        long time = Transaction.parseTimestamp("15-08-2023 09:45");
+        Transaction t = new Transaction(10.0, "food", time + 30000);
+        assertEquals("15-08-2023 09:45", t.getTimestamp());
+        assertEquals(time + 30000, t.getCreatedAt());
+
+        // The formatter is shared by all threads
+        List<String> failures = java.util.Collections.synchronizedList(new ArrayList<>());
+        Thread[] threads = new Thread[4];
+        for (int n = 0; n < threads.length; n++) {
+            long offset = n * 86400000L;
+            String expected = Transaction.formatTimestamp(time + offset);
+            threads[n] = new Thread(() -> {
+                for (int i = 0; i < 10000; i++) {
+                    String formatted = Transaction.formatTimestamp(time + offset);
+                    if (!formatted.equals(expected)) {
+                        failures.add(formatted);
+                    }
+                }
+            });
+            threads[n].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertTrue(failures.isEmpty());
+    }
+
+    @Test
+    public void testInputValidation() {
+        assertTrue(InputValidation.isValidCategory("food"));
+        assertTrue(InputValidation.isValidCategory("Entertainment"));
+        assertFalse(InputValidation.isValidCategory(null));
+        assertFalse(InputValidation.isValidCategory(""));
+        assertFalse(InputValidation.isValidCategory(" food"));
+        assertFalse(InputValidation.isValidCategory("f00d"));
+        assertFalse(InputValidation.isValidCategory("entertainments"));
+        assertFalse(InputValidation.isValidCategory("caf\u00e9"));
+
+        double[] amounts = {10, 0, 1000, 1000.5, 20};
+        String[] categories = {"food", "travel", "Bills", "other", "rent"};
+        BitSet invalid = InputValidation.findInvalid(amounts, categories, amounts.length);
+        assertEquals(3, invalid.cardinality());
+        assertTrue(invalid.get(1) && invalid.get(3) && invalid.get(4));
+    }
+
+    @Test
+    public void testCategoryRegistry() {
+        CategoryRegistry registry = new CategoryRegistry("food", "travel");
+        assertEquals(2, registry.size());
+        assertEquals(1, registry.lookup("TRAVEL"));
+        assertEquals(-1, registry.lookup("rent"));
+        int code = registry.register("Rent");
+        assertEquals(2, code);
+        assertEquals(code, registry.register("rent"));
+        assertEquals("Rent", registry.getName(code));
+        assertEquals(-1, registry.lookup("caf\u00e9"));
+        String longest = "a".repeat(CategoryRegistry.MAX_NAME_LENGTH);
+        assertEquals(3, registry.register(longest));
+        try {
+            registry.register(longest + "a");
+            fail("A category longer than MAX_NAME_LENGTH must be rejected");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        assertEquals(-1, registry.lookup(longest + "a"));
+
+        // A user defined category works in transactions and filters once registered
+        assertFalse(InputValidation.isValidCategory("groceries"));
+        assertFalse(CategoryRegistry.getDefault().contains("Groceries"));
+        CategoryRegistry.getDefault().register("Groceries");
+        Transaction groceries = new Transaction(30, "groceries");
+        assertEquals("Groceries", groceries.getCategory());
+        assertEquals(CategoryRegistry.getDefault().lookup("GROCERIES"), groceries.getCategoryCode());
+        assertEquals("food", new Transaction(10, "Food").getCategory());
+
+        model.addTransaction(new Transaction(10, "food"));
+        model.addTransaction(groceries);
+        model.addTransaction(new Transaction(20, "GROCERIES"));
+        assertEquals(2, model.getCategoryTransactionCount("groceries"));
+        assertEquals(50, model.getCategoryTotal("Groceries"), 0.01);
+        assertArrayEquals(new int[]{1, 2}, model.getRowsForCategory("groceries"));
+        assertEquals(2, new CategoryFilter("groceries").filter(model.getTransactions()).size());
+        assertEquals(2, new CategoryFilter("Groceries").filterRows(model).cardinality());
+    }
+
+    @Test
+    public void testUndoRedo() {
+        TransactionHistory history = new TransactionHistory(model);
+        model.addTransaction(new Transaction(10, "food", 1000));
+        model.addTransaction(new Transaction(20, "bills", 2000));
+        model.addTransaction(new Transaction(30, "food", 3000));
+        model.removeTransactionAt(1);
+        assertEquals(40, model.getTotalAmount(), 0.01);
+
+        // The removed transaction goes back to its row, with its index entries
+        assertTrue(history.undo());
+        assertEquals(3, model.getTransactionCount());
+        assertEquals("bills", model.getCategory(1));
+        assertArrayEquals(new int[]{1}, model.getRowsForCategory("bills"));
+        assertArrayEquals(new int[]{1, 2}, model.getRowsForAmountRange(15, 35));
+        assertTrue(history.undo());
+        assertEquals(2, model.getTransactionCount());
+        assertArrayEquals(new int[]{0}, model.getRowsForCategory("food"));
+        assertTrue(history.redo());
+        assertEquals(30, model.getAmount(2), 0.01);
+
+        // A group, like an import, is undone as one
+        history.beginGroup();
+        TransactionBatch batch = new TransactionBatch(100);
+        for (int i = 0; i < 100; i++) {
+            batch.add(1 + i, "travel", 4000 + i);
+        }
+        model.addTransactions(batch);
+        model.addTransaction(new Transaction(5, "other", 5000));
+        history.endGroup();
+        assertEquals(104, model.getTransactionCount());
+        assertTrue(history.undo());
+        assertEquals(3, model.getTransactionCount());
+        assertEquals(60, model.getTotalAmount(), 0.01);
+        assertEquals(0, model.getRowsForTimeRange(4000, 5000).length);
+        assertTrue(history.redo());
+        assertEquals(104, model.getTransactionCount());
+        assertEquals(100, model.getCategoryTransactionCount("travel"));
+        assertArrayEquals(new int[]{103}, model.getRowsForCategory("other"));
+
+        // Undoing a clear puts the cleared transactions back
+        model.clearTransactions();
+        assertEquals(0, model.getTransactionCount());
+        assertTrue(history.undo());
+        assertEquals(104, model.getTransactionCount());
+        assertEquals(5115, model.getTotalAmount(), 0.01);
+        assertTrue(history.redo());
+        assertEquals(0, model.getTotalAmount(), 0.01);
+
+        // A new change drops what could be redone
+        assertTrue(history.undo());
+        model.addTransaction(new Transaction(7, "food", 6000));
+        assertFalse(history.canRedo());
+        assertFalse(history.redo());
+    }
+
+    @Test
+    public void testTransactionIds() {
+        TransactionHistory history = new TransactionHistory(model);
+        long first = model.addTransaction(new Transaction(10, "food", 1000));
+        long second = model.addTransaction(new Transaction(20, "bills", 2000));
+        long third = model.addTransaction(new Transaction(30, "food", 3000));
+        assertTrue(first != second && second != third && first != 0);
+        assertEquals(second, model.getTransaction(1).getId());
+        assertEquals(2, model.getRowForId(third));
+
+        // Rows move, IDs stay
+        assertTrue(model.removeTransactionById(first));
+        assertFalse(model.removeTransactionById(first));
+        assertNull(model.getTransactionById(first));
+        assertEquals(1, model.getRowForId(third));
+        assertEquals(30, model.getTransactionById(third).getAmount(), 0.01);
+
+        // An undone removal gets its ID back, new transactions get new ones
+        history.undo();
+        assertEquals(0, model.getRowForId(first));
+        assertEquals(2, model.getRowForId(third));
+        long fourth = model.addTransaction(new Transaction(40, "travel", 4000));
+        assertTrue(fourth != first && fourth != second && fourth != third);
+
+        // Updates keep the row and ID and move the row in the indexes
+        assertTrue(model.updateTransaction(second, 25, "food"));
+        assertEquals(1, model.getRowForId(second));
+        assertEquals("food", model.getCategory(1));
+        assertArrayEquals(new int[]{0, 1, 2}, model.getRowsForCategory("food"));
+        assertEquals(0, model.getCategoryTransactionCount("bills"));
+        assertArrayEquals(new int[]{1}, model.getRowsForAmountRange(21, 26));
+        assertEquals(105, model.getTotalAmount(), 0.01);
+        history.undo();
+        assertEquals("bills", model.getTransactionById(second).getCategory());
+        assertEquals(100, model.getTotalAmount(), 0.01);
+        assertFalse(model.updateTransaction(12345, 10, "food"));
+
+        // Removing by value uses the ID of a transaction read from the model
+        model.addTransaction(new Transaction(10, "food", 1000));
+        Transaction duplicate = model.getTransaction(4);
+        model.removeTransaction(duplicate);
+        assertEquals(4, model.getTransactionCount());
+        assertEquals(first, model.getId(0));
+    }
+
+    @Test
+    public void testEqualValuesStayDistinct() {
+        model.addTransaction(new Transaction(10, "food", 1000));
+        model.addTransaction(new Transaction(10, "food", 1000));
+        Transaction first = model.getTransaction(0);
+        Transaction second = model.getTransaction(1);
+        assertFalse(first.equals(second));
+        assertEquals(first.withoutId(), second.withoutId());
+
+        // Set based filters keep both rows
+        assertEquals(2, new OrFilter(new CategoryFilter("food"), new AmountFilter(10)).filter(model.getTransactions()).size());
+        assertEquals(2, new NotFilter(new CategoryFilter("bills")).filter(model.getTransactions()).size());
+
+        model.removeTransaction(second);
+        assertEquals(1, model.getTransactionCount());
+        assertEquals(first, model.getTransaction(0));
+
+        // A transaction that was not read from the model is removed by its values
+        model.removeTransaction(new Transaction(10, "food", 1000));
+        assertEquals(0, model.getTransactionCount());
+    }
+
+    @Test
+    public void testTablePages() {
+        TransactionBatch batch = new TransactionBatch(100000);
+        for (int i = 0; i < 100000; i++) {
+            batch.add(1 + i % 500, i % 2 == 0 ? "food" : "bills", 1000L * i);
+        }
+        model.addTransactions(batch);
+        TransactionTableModel tableModel = new TransactionTableModel();
+        tableModel.setModel(model);
+
+        // Scrolling through the whole table keeps a bounded number of rows
+        for (int row = 0; row < model.getTransactionCount(); row += 97) {
+            assertEquals(model.getAmount(row), (Double) tableModel.getValueAt(row, 1), 0.0);
+            assertEquals(model.getCategory(row), tableModel.getValueAt(row, 2));
+            assertTrue(tableModel.getCachedPageCount() <= TransactionTableModel.MAX_PAGES);
+        }
+        assertEquals(model.getTimestamp(99999), tableModel.getValueAt(99999, 3));
+        assertEquals(model.getTotalAmount(), (Double) tableModel.getValueAt(100000, 3), 0.01);
+
+        // Changes are visible in the cached rows
+        assertEquals("bills", tableModel.getValueAt(99999, 2));
+        model.removeTransactionAt(99998);
+        assertEquals("bills", tableModel.getValueAt(99998, 2));
+        model.updateTransactionAt(5, 20, "travel");
+        assertEquals("travel", tableModel.getValueAt(5, 2));
+        assertEquals(20.0, tableModel.getValueAt(5, 1));
+    }
+
+    @Test
+    public void testReadWhileAdding() throws Exception {
+        Thread writer = new Thread(() -> {
+            for (int i = 0; i < 100; i++) {
+                TransactionBatch batch = new TransactionBatch(1000);
+                for (int j = 0; j < 1000; j++) {
+                    batch.add(1 + j % 100, j % 2 == 0 ? "food" : "bills", 1000L * j);
+                }
+                model.addTransactions(batch);
+            }
+        });
+        writer.start();
+        // Every read sees whole batches, the store and the indexes agree
+        while (writer.isAlive()) {
+            int[] counts = model.read(() -> new int[] {model.getTransactionCount(),
+                    model.getRowsForCategory("food").length, model.countRowsForAmountRange(0, 1000)});
+            assertEquals(0, counts[0] % 1000);
+            assertEquals(counts[0] / 2, counts[1]);
+            assertEquals(counts[0], counts[2]);
+        }
+        writer.join();
+        assertEquals(100000, model.getTransactionCount());
+    }
+
+    @Test
+    public void testStaleQueriesAreDropped() throws Exception {
+        QueryExecutor queries = new QueryExecutor(model);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> results = new CopyOnWriteArrayList<>();
+        queries.submit(() -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                // Cancelled by the newer query
+            }
+            return "stale";
+        }, results::add);
+        started.await();
+        Future<?> latest = queries.submit(() -> "latest", results::add);
+        release.countDown();
+        latest.get();
+        SwingUtilities.invokeAndWait(() -> { });
+        assertEquals(1, results.size());
+        assertEquals("latest", results.get(0));
+        queries.shutdown();
+    }
+
+    // Transactions of different models or snapshots only match by their values
+    private static List<Transaction> withoutIds(List<Transaction> transactions) {
+        List<Transaction> values = new ArrayList<>(transactions.size());
+        for (Transaction t : transactions) {
+            values.add(t.withoutId());
+        }
+        return values;
+    }
+
+}
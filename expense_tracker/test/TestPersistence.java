@@ -0,0 +1,291 @@
+// package test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import controller.CsvImporter;
+import model.ExpenseTrackerModel;
+import model.Transaction;
+import model.TransactionBatch;
+import model.TransactionHistory;
+import model.Filter.AmountFilter;
+import model.Filter.CategoryFilter;
+import model.Persistence.SnapshotFile;
+import model.Persistence.TransactionDatabase;
+import model.Persistence.TransactionExporter;
+import model.Persistence.TransactionLog;
+
+public class TestPersistence {
+
+    private Path directory;
+    private Path logFile;
+
+    @Before
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("expense-tracker");
+        logFile = directory.resolve("transactions.log");
+    }
+
+    @After
+    public void cleanup() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    @Test
+    public void testLogIsReplayed() throws IOException {
+        ExpenseTrackerModel model = new ExpenseTrackerModel();
+        TransactionLog log = TransactionLog.open(logFile, model);
+        model.addTransaction(new Transaction(10.0, "food"));
+        model.clearTransactions();
+        Transaction bills = new Transaction(20.0, "bills");
+        model.addTransaction(bills);
+        model.addTransaction(new Transaction(30.0, "food"));
+        model.addTransaction(new Transaction(40.0, "travel"));
+        model.removeTransaction(bills);
+        log.sync();
+        log.close();
+
+        ExpenseTrackerModel restored = new ExpenseTrackerModel();
+        TransactionLog reopened = TransactionLog.open(logFile, restored);
+        assertEquals(withoutIds(model.getTransactions()), withoutIds(restored.getTransactions()));
+
+        // Appending continues after the replayed records
+        restored.addTransaction(new Transaction(50.0, "food"));
+        reopened.close();
+        ExpenseTrackerModel again = new ExpenseTrackerModel();
+        TransactionLog.open(logFile, again).close();
+        List<Transaction> transactions = again.getTransactions();
+        assertEquals(3, transactions.size());
+        assertEquals(50.0, transactions.get(2).getAmount(), 0.01);
+        assertEquals(120.0, again.getTotalAmount(), 0.01);
+    }
+
+    @Test
+    public void testUndoIsLogged() throws IOException {
+        ExpenseTrackerModel model = new ExpenseTrackerModel();
+        TransactionLog log = TransactionLog.open(logFile, model);
+        TransactionHistory history = new TransactionHistory(model);
+        model.addTransaction(new Transaction(10.0, "food", 1000));
+        model.addTransaction(new Transaction(20.0, "bills", 2000));
+        model.addTransaction(new Transaction(30.0, "travel", 3000));
+        model.removeTransactionAt(0);
+        // Puts the first row back in front of the others
+        history.undo();
+        model.addTransaction(new Transaction(40.0, "food", 4000));
+        history.undo();
+        log.close();
+
+        ExpenseTrackerModel restored = new ExpenseTrackerModel();
+        TransactionLog.open(logFile, restored).close();
+        assertEquals(withoutIds(model.getTransactions()), withoutIds(restored.getTransactions()));
+        assertEquals(10.0, restored.getAmount(0), 0.01);
+    }
+
+    @Test
+    public void testTornTailIsDiscarded() throws IOException {
+        ExpenseTrackerModel model = new ExpenseTrackerModel();
+        TransactionLog log = TransactionLog.open(logFile, model);
+        model.addTransaction(new Transaction(10.0, "food"));
+        log.close();
+        long validSize = Files.size(logFile);
+
+        // A frame header claiming more bytes than were written before a crash
+        try (FileChannel channel = FileChannel.open(logFile, StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.wrap(new byte[]{0, 0, 0, 100, 1, 2, 3, 4, 5}));
+        }
+
+        ExpenseTrackerModel restored = new ExpenseTrackerModel();
+        TransactionLog.open(logFile, restored).close();
+        assertEquals(1, restored.getTransactionCount());
+        assertEquals(validSize, Files.size(logFile));
+    }
+
+    @Test
+    public void testGroupCommit() throws IOException {
+        ExpenseTrackerModel model = new ExpenseTrackerModel();
+        // A long interval, only the batch size or sync() write the records
+        TransactionLog log = TransactionLog.open(logFile, model, 60000, 100);
+        for (int i = 0; i < 1000; i++) {
+            model.addTransaction(new Transaction(1 + i % 1000, "food"));
+        }
+        log.sync();
+
+        // Read a copy while the log is still open, as after a crash
+        Path copy = Files.copy(logFile, directory.resolve("copy.log"));
+        ExpenseTrackerModel restored = new ExpenseTrackerModel();
+        TransactionLog.open(copy, restored).close();
+        assertEquals(1000, restored.getTransactionCount());
+        log.close();
+    }
+
+    @Test
+    public void testSnapshotRoundTrip() throws IOException {
+        TransactionBatch batch = new TransactionBatch(4);
+        batch.add(30.0, "food", 3000);
+        batch.add(10.0, "bills", 1000);
+        batch.add(20.0, "food", 2000);
+        ExpenseTrackerModel model = new ExpenseTrackerModel();
+        model.addTransaction(new Transaction(5.0, "travel", 500));
+        model.addTransactions(batch);
+        assertEquals(4, model.getTransactionCount());
+        assertEquals(65.0, model.getTotalAmount(), 0.01);
+        assertArrayEquals(new int[]{1, 3}, model.getRowsForAmountRange(15, 35));
+
+        Path file = directory.resolve("snapshot.bin");
+        SnapshotFile.write(file, model.snapshot(), 7);
+        SnapshotFile snapshot = SnapshotFile.read(file);
+        assertEquals(7, snapshot.getLogGeneration());
+
+        ExpenseTrackerModel restored = new ExpenseTrackerModel();
+        restored.addTransactions(snapshot.getTransactions());
+        assertEquals(withoutIds(model.getTransactions()), withoutIds(restored.getTransactions()));
+        assertArrayEquals(new int[]{1, 3}, restored.getRowsForAmountRange(15, 35));
+        assertEquals(2, restored.getCategoryTransactionCount("food"));
+
+        // A damaged snapshot fails to read instead of loading wrong rows
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length - 10] ^= 1;
+        Files.write(file, bytes);
+        assertUnreadable(file, "Corrupt transaction snapshot, the checksum does not match");
+        bytes[bytes.length - 10] ^= 1;
+
+        // Also with a matching checksum, the amount order must hold every row once
+        ByteBuffer columns = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        int order = bytes.length - 4 - 4 * 22 + 4 * 16;
+        columns.putInt(order + 4, columns.getInt(order));
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length - 4);
+        columns.putInt(bytes.length - 4, (int) crc.getValue());
+        Files.write(file, bytes);
+        assertUnreadable(file, "Corrupt amount order in transaction snapshot");
+    }
+
+    private static void assertUnreadable(Path file, String message) {
+        try {
+            SnapshotFile.read(file);
+            fail("The damaged snapshot must be rejected");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith(message));
+        }
+    }
+
+    @Test
+    public void testCompaction() throws IOException {
+        ExpenseTrackerModel model = new ExpenseTrackerModel();
+        TransactionDatabase database = TransactionDatabase.open(directory, model, 10, 100, 500);
+        for (int i = 0; i < 1200; i++) {
+            model.addTransaction(new Transaction(1 + i % 100, i % 2 == 0 ? "food" : "bills"));
+        }
+        model.removeTransaction(model.getTransaction(0));
+        database.awaitCompaction();
+        database.close();
+        // Two compactions, the snapshot replaces the segments before the current one
+        assertFalse(Files.exists(directory.resolve("log-0.bin")));
+        assertFalse(Files.exists(directory.resolve("log-1.bin")));
+
+        ExpenseTrackerModel restored = new ExpenseTrackerModel();
+        TransactionDatabase.open(directory, restored).close();
+        assertEquals(withoutIds(model.getTransactions()), withoutIds(restored.getTransactions()));
+        assertEquals(model.getTotalAmount(), restored.getTotalAmount(), 0.01);
+        assertArrayEquals(model.getRowsForAmountRange(10, 20), restored.getRowsForAmountRange(10, 20));
+    }
+
+    @Test
+    public void testCsvExport() throws IOException {
+        ExpenseTrackerModel model = new ExpenseTrackerModel();
+        model.addTransaction(new Transaction(12.5, "food", 1675243800000L));
+        model.addTransaction(new Transaction(40.0, "travel", 1675243800000L));
+        model.addTransaction(new Transaction(7.0, "Food", 1675330200000L));
+
+        Path file = directory.resolve("export.csv");
+        assertEquals(2, TransactionExporter.writeCsv(model, new CategoryFilter("food"), file));
+        List<String> lines = Files.readAllLines(file);
+        assertEquals(3, lines.size());
+        assertEquals("amount,category,date", lines.get(0));
+        assertEquals("12.5,food," + Transaction.formatTimestamp(1675243800000L), lines.get(1));
+
+        // The export reads back with the importer
+        ExpenseTrackerModel imported = new ExpenseTrackerModel();
+        new CsvImporter(imported).importFile(file);
+        assertEquals(2, imported.getTransactionCount());
+        assertEquals(19.5, imported.getTotalAmount(), 0.01);
+        assertEquals(model.getTimestamp(2), imported.getTimestamp(1));
+    }
+
+    @Test
+    public void testBinaryExport() throws IOException {
+        ExpenseTrackerModel model = new ExpenseTrackerModel();
+        for (int i = 0; i < 100000; i++) {
+            model.addTransaction(new Transaction(1 + i % 500, i % 3 == 0 ? "bills" : "food", i));
+        }
+        Path file = directory.resolve("export.bin");
+        assertEquals(100000, TransactionExporter.writeBinary(model, null, file));
+        ExpenseTrackerModel restored = new ExpenseTrackerModel();
+        assertEquals(100000, TransactionExporter.readBinary(file, restored));
+        assertEquals(withoutIds(model.getTransactions()), withoutIds(restored.getTransactions()));
+
+        assertEquals(200, TransactionExporter.writeBinary(model, new AmountFilter(5.0), file));
+        ExpenseTrackerModel filtered = new ExpenseTrackerModel();
+        TransactionExporter.readBinary(file, filtered);
+        assertEquals(1000.0, filtered.getTotalAmount(), 0.01);
+
+        // A name length above Short.MAX_VALUE is read as unsigned, the file is too short for it
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{0, (byte) 0x80}), 12);
+        }
+        try {
+            TransactionExporter.readBinary(file, new ExpenseTrackerModel());
+            fail("The corrupt export must be rejected");
+        } catch (IOException e) {
+            assertEquals("Truncated transaction export", e.getMessage());
+        }
+
+        // The records are wrapped into batches, so their amounts are checked while reading
+        ByteBuffer export = ByteBuffer.allocate(36).order(ByteOrder.LITTLE_ENDIAN);
+        export.putInt(0x45545831).putInt(1).putInt(1).putShort((short) 4).put("food".getBytes(StandardCharsets.US_ASCII));
+        export.putDouble(Double.NaN).putLong(0).putShort((short) 0);
+        Files.write(file, export.array());
+        ExpenseTrackerModel invalid = new ExpenseTrackerModel();
+        try {
+            TransactionExporter.readBinary(file, invalid);
+            fail("The NaN amount must be rejected");
+        } catch (IOException e) {
+            assertEquals("Invalid amount in transaction export: NaN", e.getMessage());
+        }
+        assertEquals(0, invalid.getTransactionCount());
+    }
+
+    // Transactions of different models or snapshots only match by their values
+    private static List<Transaction> withoutIds(List<Transaction> transactions) {
+        List<Transaction> values = new ArrayList<>(transactions.size());
+        for (Transaction t : transactions) {
+            values.add(t.withoutId());
+        }
+        return values;
+    }
+
+}